@@ -0,0 +1,145 @@
+package pers.u8f23.fabric.app;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.fabric.client.CloseableIterator;
+import org.hyperledger.fabric.client.Network;
+import org.hyperledger.fabric.protos.common.Block;
+import org.hyperledger.fabric.protos.common.ChannelHeader;
+import org.hyperledger.fabric.protos.common.Envelope;
+import org.hyperledger.fabric.protos.common.HeaderType;
+import org.hyperledger.fabric.protos.common.Payload;
+import org.hyperledger.fabric.protos.ledger.rwset.NsReadWriteSet;
+import org.hyperledger.fabric.protos.ledger.rwset.TxReadWriteSet;
+import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KVRWSet;
+import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KVWrite;
+import org.hyperledger.fabric.protos.peer.ChaincodeAction;
+import org.hyperledger.fabric.protos.peer.ChaincodeActionPayload;
+import org.hyperledger.fabric.protos.peer.ProposalResponsePayload;
+import org.hyperledger.fabric.protos.peer.Transaction;
+import org.hyperledger.fabric.protos.peer.TransactionAction;
+import pers.u8f23.fabric.app.api.EvaluateCache;
+
+/**
+ * Drops cached evaluate responses whose state keys are written by committed transactions, read from the write
+ * sets of one full block event stream.
+ * <p>
+ * Writes of invalid transactions are not applied to the ledger, but invalidating them too is harmless. Whenever a
+ * block cannot be parsed or the stream has to reconnect, the whole cache is dropped.
+ */
+@Slf4j
+public final class CacheInvalidator implements AutoCloseable {
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+    private static final char COMPOSITE_KEY_DELIMITER = '\u0000';
+
+    private final Network network;
+    private final String chaincodeName;
+    private final EvaluateCache cache;
+    private final Thread listenerThread;
+    private volatile CloseableIterator<Block> events;
+    private volatile boolean closed;
+    private long nextBlockNumber = -1;
+
+    public CacheInvalidator(Network network, String chaincodeName, EvaluateCache cache) {
+        this.network = network;
+        this.chaincodeName = chaincodeName;
+        this.cache = cache;
+        this.listenerThread = new Thread(this::listen, "cache-invalidator");
+        this.listenerThread.setDaemon(true);
+        this.listenerThread.start();
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        CloseableIterator<Block> current = this.events;
+        if (current != null) {
+            current.close();
+        }
+        this.listenerThread.interrupt();
+    }
+
+    private void listen() {
+        while (!this.closed) {
+            try (CloseableIterator<Block> iterator = openEvents()) {
+                this.events = iterator;
+                while (iterator.hasNext()) {
+                    onBlock(iterator.next());
+                }
+            } catch (RuntimeException e) {
+                if (this.closed) {
+                    return;
+                }
+                log.warn("block event stream failed, reconnecting from block {}", this.nextBlockNumber, e);
+            }
+            // writes committed while disconnected are replayed, but reads may have cached them meanwhile.
+            this.cache.invalidateAll();
+            try {
+                Thread.sleep(RECONNECT_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private CloseableIterator<Block> openEvents() {
+        if (this.nextBlockNumber < 0) {
+            return this.network.getBlockEvents();
+        }
+        return this.network.newBlockEventsRequest()
+                .startBlock(this.nextBlockNumber)
+                .build()
+                .getEvents();
+    }
+
+    private void onBlock(Block block) {
+        this.nextBlockNumber = block.getHeader().getNumber() + 1;
+        try {
+            for (ByteString envelope : block.getData().getDataList()) {
+                invalidateWrites(envelope);
+            }
+        } catch (InvalidProtocolBufferException e) {
+            log.warn("failed to parse block {}, dropping all cached responses", block.getHeader().getNumber(), e);
+            this.cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Composite keys map to their first attribute. That is the asset id for sub-keys of an asset, such as value
+     * deltas. For owner index entries it is the owner id, which names no cached response, and the transactions
+     * writing them also write the asset key itself.
+     */
+    private static String toStateKey(String key) {
+        if (key.isEmpty() || key.charAt(0) != COMPOSITE_KEY_DELIMITER) {
+            return key;
+        }
+        int typeEnd = key.indexOf(COMPOSITE_KEY_DELIMITER, 1);
+        int attributeEnd = typeEnd < 0 ? -1 : key.indexOf(COMPOSITE_KEY_DELIMITER, typeEnd + 1);
+        return attributeEnd < 0 ? key : key.substring(typeEnd + 1, attributeEnd);
+    }
+
+    private void invalidateWrites(ByteString envelopeBytes) throws InvalidProtocolBufferException {
+        Payload payload = Payload.parseFrom(Envelope.parseFrom(envelopeBytes).getPayload());
+        ChannelHeader channelHeader = ChannelHeader.parseFrom(payload.getHeader().getChannelHeader());
+        if (channelHeader.getType() != HeaderType.ENDORSER_TRANSACTION_VALUE) {
+            return;
+        }
+        Transaction transaction = Transaction.parseFrom(payload.getData());
+        for (TransactionAction action : transaction.getActionsList()) {
+            ChaincodeActionPayload actionPayload = ChaincodeActionPayload.parseFrom(action.getPayload());
+            ProposalResponsePayload responsePayload = ProposalResponsePayload.parseFrom(
+                    actionPayload.getAction().getProposalResponsePayload());
+            ChaincodeAction chaincodeAction = ChaincodeAction.parseFrom(responsePayload.getExtension());
+            TxReadWriteSet readWriteSet = TxReadWriteSet.parseFrom(chaincodeAction.getResults());
+            for (NsReadWriteSet namespaceSet : readWriteSet.getNsRwsetList()) {
+                if (!this.chaincodeName.equals(namespaceSet.getNamespace())) {
+                    continue;
+                }
+                for (KVWrite write : KVRWSet.parseFrom(namespaceSet.getRwset()).getWritesList()) {
+                    this.cache.invalidate(toStateKey(write.getKey()));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package pers.u8f23.fabric.app;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.fabric.client.CloseableIterator;
+import org.hyperledger.fabric.client.Network;
+import org.hyperledger.fabric.client.Status;
+import org.hyperledger.fabric.protos.peer.FilteredBlock;
+import org.hyperledger.fabric.protos.peer.FilteredTransaction;
+import org.hyperledger.fabric.protos.peer.TxValidationCode;
+import pers.u8f23.fabric.app.api.ProposedSubmit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Resolves commit status of submitted transactions from one shared filtered block event stream, instead of one
+ * commit status request per transaction.
+ * <p>
+ * Transactions not seen in a block within the timeout fall back to {@link ProposedSubmit#getSubmitStatusAsync()}.
+ * Statuses of recently committed transactions are kept, so a block arriving before {@link #track} is called is
+ * not missed.
+ */
+@Slf4j
+public final class CommitTracker implements AutoCloseable {
+    private static final int RECENT_STATUS_CAPACITY = 16 * 1024;
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+    private final Network network;
+    private final Executor fallbackExecutor;
+    private final Map<String, CompletableFuture<Status>> pending = new ConcurrentHashMap<>();
+    private final Map<String, Status> recent = new LinkedHashMap<>(RECENT_STATUS_CAPACITY, 0.75f) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Status> eldest) {
+            return size() > RECENT_STATUS_CAPACITY;
+        }
+    };
+    private final Thread listenerThread;
+    private volatile CloseableIterator<FilteredBlock> events;
+    private volatile boolean closed;
+    private long nextBlockNumber = -1;
+
+    /**
+     * @param timeout time to wait for a block before falling back to a per-transaction status request.
+     */
+    public CommitTracker(Network network, long timeout, TimeUnit unit) {
+        this.network = network;
+        this.fallbackExecutor = CompletableFuture.delayedExecutor(timeout, unit);
+        this.listenerThread = new Thread(this::listen, "commit-tracker");
+        this.listenerThread.setDaemon(true);
+        this.listenerThread.start();
+    }
+
+    @Getter
+    @ToString
+    @RequiredArgsConstructor
+    private static final class BlockStatus implements Status {
+        private final String transactionId;
+        private final long blockNumber;
+        private final TxValidationCode code;
+
+        @Override
+        public boolean isSuccessful() {
+            return this.code == TxValidationCode.VALID;
+        }
+    }
+
+    public CompletableFuture<Status> track(ProposedSubmit<?> submit) {
+        String transactionId = submit.getTransactionId();
+        CompletableFuture<Status> future;
+        synchronized (this.recent) {
+            Status status = this.recent.get(transactionId);
+            if (status != null) {
+                return CompletableFuture.completedFuture(status);
+            }
+            future = this.pending.computeIfAbsent(transactionId, __ -> new CompletableFuture<>());
+        }
+        CompletableFuture.runAsync(() -> fallback(transactionId, submit), this.fallbackExecutor);
+        return future;
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        CloseableIterator<FilteredBlock> current = this.events;
+        if (current != null) {
+            current.close();
+        }
+        this.listenerThread.interrupt();
+    }
+
+    private void fallback(String transactionId, ProposedSubmit<?> submit) {
+        CompletableFuture<Status> future = this.pending.remove(transactionId);
+        if (future == null) {
+            return;
+        }
+        log.debug("transaction {} not seen in block events, requesting commit status", transactionId);
+        submit.getSubmitStatusAsync().whenComplete((status, e) -> {
+            if (e != null) {
+                future.completeExceptionally(e);
+            } else {
+                future.complete(status);
+            }
+        });
+    }
+
+    private void listen() {
+        while (!this.closed) {
+            try (CloseableIterator<FilteredBlock> iterator = openEvents()) {
+                this.events = iterator;
+                while (iterator.hasNext()) {
+                    onBlock(iterator.next());
+                }
+            } catch (RuntimeException e) {
+                if (this.closed) {
+                    return;
+                }
+                log.warn("block event stream failed, reconnecting from block {}", this.nextBlockNumber, e);
+            }
+            try {
+                Thread.sleep(RECONNECT_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private CloseableIterator<FilteredBlock> openEvents() {
+        if (this.nextBlockNumber < 0) {
+            return this.network.getFilteredBlockEvents();
+        }
+        return this.network.newFilteredBlockEventsRequest()
+                .startBlock(this.nextBlockNumber)
+                .build()
+                .getEvents();
+    }
+
+    private void onBlock(FilteredBlock block) {
+        this.nextBlockNumber = block.getNumber() + 1;
+        for (FilteredTransaction transaction : block.getFilteredTransactionsList()) {
+            String transactionId = transaction.getTxid();
+            Status status = new BlockStatus(transactionId, block.getNumber(), transaction.getTxValidationCode());
+            CompletableFuture<Status> future;
+            synchronized (this.recent) {
+                this.recent.put(transactionId, status);
+                future = this.pending.remove(transactionId);
+            }
+            if (future != null) {
+                future.complete(status);
+            }
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package pers.u8f23.fabric.app;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.GatewayException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Gateways to several peers, each with its own api instance.
+ * <p>
+ * {@link #evaluate} routes to the available peer with the lowest {@code (outstanding evaluates + 1) * EWMA latency},
+ * so a slow or busy peer gets less traffic. A peer failing three times in a row with an unavailable, deadline or
+ * resource error is ejected, starting at one second and doubling up to 30 seconds while it keeps failing; an
+ * evaluate failing that way is retried once on another peer that is not ejected. With hedging on, an evaluate still
+ * running after the configured percentile of recent latencies is also sent to a second available peer, and the first result
+ * wins, so hedging adds about {@code 1 - percentile} of extra evaluate load.
+ * <p>
+ * Submits and event listening are not routed: use {@link #getPrimaryApi()} and {@link #getPrimaryGateway()}, the
+ * first configured peer that is not ejected.
+ */
+@Slf4j
+public final class GatewayPool<A> implements AutoCloseable {
+    private static final double EWMA_WEIGHT = 0.1;
+    private static final int EJECT_AFTER_FAILURES = 3;
+    private static final long MIN_EJECT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_EJECT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final int LATENCY_SAMPLES = 1024;
+    private static final int MIN_HEDGE_SAMPLES = 128;
+    private static final int HEDGE_DELAY_UPDATE_INTERVAL = 128;
+    private static final long MIN_HEDGE_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final List<Peer<A>> peers;
+    private final Executor executor;
+    private final double hedgePercentile;
+    private final AtomicLongArray latencySamples = new AtomicLongArray(LATENCY_SAMPLES);
+    private final AtomicLong sampleCount = new AtomicLong();
+    private volatile long hedgeDelayNanos = Long.MAX_VALUE;
+
+    /**
+     * @param endpoints       peers in order of preference for submits; the pool closes their gateways and channels.
+     * @param apiFactory      creates the api bound to the gateway of one peer.
+     * @param executor        runs evaluates while hedging, both attempts of a hedged evaluate included; a bounded
+     *                        pool caps the evaluates in flight.
+     * @param hedgePercentile percentile of recent evaluate latencies after which an evaluate is hedged, in
+     *                        {@code (0, 1)}, or {@code 0} to not hedge.
+     */
+    public GatewayPool(List<Endpoint> endpoints, Function<Gateway, A> apiFactory, Executor executor, double hedgePercentile) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("At least one endpoint is required.");
+        }
+        if (hedgePercentile < 0 || hedgePercentile >= 1) {
+            throw new IllegalArgumentException("hedgePercentile must be in [0, 1): " + hedgePercentile);
+        }
+        this.peers = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            this.peers.add(new Peer<>(endpoint, apiFactory.apply(endpoint.getGateway())));
+        }
+        this.executor = executor;
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static final class Endpoint {
+        private final String name;
+        private final ManagedChannel channel;
+        private final Gateway gateway;
+    }
+
+    @FunctionalInterface
+    public interface EvaluateCall<A, T> {
+        T evaluate(A api) throws Exception;
+    }
+
+    public A getPrimaryApi() {
+        return primary().api;
+    }
+
+    public Gateway getPrimaryGateway() {
+        return primary().endpoint.getGateway();
+    }
+
+    /**
+     * Run a read only call on the best available peer.
+     * {@code call} may run more than once, on different peers.
+     */
+    public <T> T evaluate(EvaluateCall<A, T> call) throws Exception {
+        Peer<A> peer = choose(null);
+        long delayNanos = this.hedgeDelayNanos;
+        if (delayNanos == Long.MAX_VALUE || this.peers.size() < 2) {
+            try {
+                return attempt(peer, call);
+            } catch (Exception e) {
+                return failover(peer, call, e);
+            }
+        }
+        CompletableFuture<T> first = CompletableFuture.supplyAsync(() -> attemptAsync(peer, call), this.executor);
+        try {
+            return first.get(delayNanos, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            return failover(peer, call, unwrap(e));
+        } catch (TimeoutException e) {
+            // hedge below.
+        }
+        Peer<A> hedgePeer = choose(peer);
+        if (hedgePeer == null) {
+            return join(first);
+        }
+        log.debug("evaluate on {} slower than {} us, hedged to {}", peer.endpoint.getName(),
+                TimeUnit.NANOSECONDS.toMicros(delayNanos), hedgePeer.endpoint.getName());
+        CompletableFuture<T> second = CompletableFuture.supplyAsync(() -> attemptAsync(hedgePeer, call), this.executor);
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        first.whenComplete((result, e) -> completeFirst(winner, failures, result, e));
+        second.whenComplete((result, e) -> completeFirst(winner, failures, result, e));
+        // the slower attempt keeps running, so its latency still reaches the peer's average.
+        return join(winner);
+    }
+
+    /**
+     * Close every gateway and shut down its channel.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        List<Endpoint> endpoints = new ArrayList<>(this.peers.size());
+        for (Peer<A> peer : this.peers) {
+            endpoints.add(peer.endpoint);
+        }
+        closeEndpoints(endpoints);
+    }
+
+    /**
+     * Close endpoints not handed to a pool, such as those connected before another one failed.
+     */
+    public static void closeEndpoints(List<Endpoint> endpoints) throws InterruptedException {
+        for (Endpoint endpoint : endpoints) {
+            endpoint.getGateway().close();
+            endpoint.getChannel().shutdownNow();
+        }
+        for (Endpoint endpoint : endpoints) {
+            endpoint.getChannel().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private <T> T attempt(Peer<A> peer, EvaluateCall<A, T> call) throws Exception {
+        peer.outstanding.incrementAndGet();
+        long startNanos = System.nanoTime();
+        try {
+            T result = call.evaluate(peer.api);
+            long latencyNanos = System.nanoTime() - startNanos;
+            peer.onResponse(latencyNanos);
+            recordLatency(latencyNanos);
+            return result;
+        } catch (Exception e) {
+            if (isPeerFailure(e)) {
+                peer.onFailure();
+            } else {
+                // chaincode and endorsement errors still mean the peer answered.
+                peer.onResponse(System.nanoTime() - startNanos);
+            }
+            throw e;
+        } finally {
+            peer.outstanding.decrementAndGet();
+        }
+    }
+
+    private <T> T attemptAsync(Peer<A> peer, EvaluateCall<A, T> call) {
+        try {
+            return attempt(peer, call);
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private <T> T failover(Peer<A> failedPeer, EvaluateCall<A, T> call, Exception e) throws Exception {
+        if (!isPeerFailure(e)) {
+            throw e;
+        }
+        Peer<A> peer = choose(failedPeer);
+        if (peer == null) {
+            throw e;
+        }
+        log.debug("evaluate on {} failed with {}, retry on {}", failedPeer.endpoint.getName(),
+                ((GatewayException) e).getStatus().getCode(), peer.endpoint.getName());
+        return attempt(peer, call);
+    }
+
+    private static <T> void completeFirst(CompletableFuture<T> winner, AtomicInteger failures, T result, Throwable e) {
+        if (e == null) {
+            winner.complete(result);
+        } else if (failures.incrementAndGet() == 2) {
+            winner.completeExceptionally(e);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return (Exception) cause;
+    }
+
+    /**
+     * @param excluded peer not to choose, or {@code null}.
+     * @return best available peer; without {@code excluded}, the one ejected the shortest time if all are ejected.
+     * With {@code excluded}, the alternative for a hedge or failover, {@code null} if every other peer is ejected.
+     */
+    private Peer<A> choose(Peer<A> excluded) {
+        long now = System.nanoTime();
+        Peer<A> best = null;
+        double bestScore = Double.MAX_VALUE;
+        Peer<A> soonest = null;
+        for (Peer<A> peer : this.peers) {
+            if (peer == excluded) {
+                continue;
+            }
+            if (!peer.isAvailable(now)) {
+                if (soonest == null || peer.ejectedUntilNanos - soonest.ejectedUntilNanos < 0) {
+                    soonest = peer;
+                }
+                continue;
+            }
+            // unmeasured peers score by outstanding evaluates alone, so they are tried early.
+            double score = (peer.outstanding.get() + 1) * Math.max(peer.ewmaNanos, 1);
+            if (score < bestScore) {
+                best = peer;
+                bestScore = score;
+            }
+        }
+        return best != null || excluded != null ? best : soonest;
+    }
+
+    private Peer<A> primary() {
+        long now = System.nanoTime();
+        for (Peer<A> peer : this.peers) {
+            if (peer.isAvailable(now)) {
+                return peer;
+            }
+        }
+        return choose(null);
+    }
+
+    /**
+     * Keep recent evaluate latencies and re-estimate the hedge delay from them once per interval, instead of
+     * sorting on every call.
+     */
+    private void recordLatency(long latencyNanos) {
+        if (this.hedgePercentile <= 0) {
+            return;
+        }
+        long index = this.sampleCount.getAndIncrement();
+        this.latencySamples.set((int) (index % LATENCY_SAMPLES), latencyNanos);
+        long count = index + 1;
+        if (count < MIN_HEDGE_SAMPLES || count % HEDGE_DELAY_UPDATE_INTERVAL != 0) {
+            return;
+        }
+        long[] samples = new long[(int) Math.min(count, LATENCY_SAMPLES)];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = this.latencySamples.get(i);
+        }
+        Arrays.sort(samples);
+        int percentileIndex = (int) Math.ceil(this.hedgePercentile * samples.length) - 1;
+        this.hedgeDelayNanos = Math.max(MIN_HEDGE_DELAY_NANOS, samples[Math.max(0, percentileIndex)]);
+    }
+
+    private static boolean isPeerFailure(Exception e) {
+        if (!(e instanceof GatewayException)) {
+            return false;
+        }
+        Status.Code code = ((GatewayException) e).getStatus().getCode();
+        return code == Status.Code.UNAVAILABLE
+                || code == Status.Code.DEADLINE_EXCEEDED
+                || code == Status.Code.RESOURCE_EXHAUSTED;
+    }
+
+    private static final class Peer<A> {
+        private final Endpoint endpoint;
+        private final A api;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        // written without synchronization, a lost update only skews the average by one sample.
+        private volatile double ewmaNanos;
+        private volatile boolean ejected;
+        private volatile long ejectedUntilNanos;
+        private long ejectNanos;
+
+        Peer(Endpoint endpoint, A api) {
+            this.endpoint = endpoint;
+            this.api = api;
+        }
+
+        /**
+         * Ejected peers become available again when the ejection ends, and stay so once they answer.
+         */
+        boolean isAvailable(long now) {
+            return !this.ejected || now - this.ejectedUntilNanos >= 0;
+        }
+
+        void onResponse(long latencyNanos) {
+            double ewma = this.ewmaNanos;
+            this.ewmaNanos = ewma == 0 ? latencyNanos : ewma + EWMA_WEIGHT * (latencyNanos - ewma);
+            if (this.consecutiveFailures.get() != 0) {
+                recover();
+            }
+        }
+
+        synchronized void onFailure() {
+            if (this.consecutiveFailures.incrementAndGet() < EJECT_AFTER_FAILURES) {
+                return;
+            }
+            this.ejectNanos = this.ejectNanos == 0 ? MIN_EJECT_NANOS : Math.min(this.ejectNanos * 2, MAX_EJECT_NANOS);
+            this.ejectedUntilNanos = System.nanoTime() + this.ejectNanos;
+            this.ejected = true;
+            log.warn("peer {} ejected for {} ms after {} consecutive failures", this.endpoint.getName(),
+                    TimeUnit.NANOSECONDS.toMillis(this.ejectNanos), this.consecutiveFailures.get());
+        }
+
+        private synchronized void recover() {
+            this.consecutiveFailures.set(0);
+            this.ejectNanos = 0;
+            if (this.ejected) {
+                this.ejected = false;
+                log.info("peer {} recovered", this.endpoint.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package pers.u8f23.fabric.app;
+
+import io.grpc.CallOptions;
+import io.grpc.ChannelCredentials;
+import io.grpc.ClientCall;
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.netty.channel.Channel;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates gateway channels with a {@link GrpcTransportProfile}, and owns the event loop and executor they share.
+ * Close the transport after all of its channels.
+ */
+@Slf4j
+public final class GrpcTransport implements AutoCloseable {
+    @Getter
+    private final GrpcTransportProfile profile;
+    private final EventLoopGroup eventLoopGroup;
+    private final Class<? extends Channel> channelType;
+    private final ExecutorService executor;
+
+    public GrpcTransport(GrpcTransportProfile profile) {
+        this.profile = profile;
+        if (profile.isNativeTransport() && Epoll.isAvailable()) {
+            this.eventLoopGroup = new EpollEventLoopGroup(profile.getEventLoopThreads(), new DefaultThreadFactory("grpc-epoll", true));
+            this.channelType = EpollSocketChannel.class;
+        } else if (profile.isNativeTransport() || profile.getEventLoopThreads() > 0) {
+            if (profile.isNativeTransport()) {
+                log.info("epoll transport not available, using NIO: {}", Epoll.unavailabilityCause().toString());
+            }
+            this.eventLoopGroup = new NioEventLoopGroup(profile.getEventLoopThreads(), new DefaultThreadFactory("grpc-nio", true));
+            this.channelType = NioSocketChannel.class;
+        } else {
+            this.eventLoopGroup = null;
+            this.channelType = null;
+        }
+        this.executor = profile.getExecutorThreads() <= 0 ? null
+                : Executors.newFixedThreadPool(profile.getExecutorThreads(), new DefaultThreadFactory("grpc-executor", true));
+    }
+
+    /**
+     * @param authority TLS host name to verify instead of the target host, or {@code null}.
+     * @return one channel, or a channel spreading calls over {@link GrpcTransportProfile#getChannels()} connections.
+     */
+    public ManagedChannel newChannel(String target, ChannelCredentials credentials, String authority) {
+        if (this.profile.getChannels() == 1) {
+            return newNettyChannel(target, credentials, authority);
+        }
+        List<ManagedChannel> stripes = new ArrayList<>(this.profile.getChannels());
+        for (int i = 0; i < this.profile.getChannels(); i++) {
+            stripes.add(newNettyChannel(target, credentials, authority));
+        }
+        return new StripedChannel(stripes);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        if (this.executor != null) {
+            this.executor.shutdown();
+        }
+        if (this.eventLoopGroup != null) {
+            this.eventLoopGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS).await(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private ManagedChannel newNettyChannel(String target, ChannelCredentials credentials, String authority) {
+        NettyChannelBuilder builder = NettyChannelBuilder.forTarget(target, credentials);
+        if (authority != null) {
+            builder.overrideAuthority(authority);
+        }
+        if (this.eventLoopGroup != null) {
+            builder.eventLoopGroup(this.eventLoopGroup).channelType(this.channelType);
+        }
+        if (this.executor != null) {
+            builder.executor(this.executor);
+        }
+        if (this.profile.getInitialFlowControlWindow() > 0) {
+            // unlike flowControlWindow, keeps the window growing with the measured bandwidth-delay product.
+            builder.initialFlowControlWindow(this.profile.getInitialFlowControlWindow());
+        }
+        if (this.profile.getMaxInboundMessageSize() > 0) {
+            builder.maxInboundMessageSize(this.profile.getMaxInboundMessageSize());
+        }
+        if (this.profile.getKeepAliveTimeMillis() > 0) {
+            builder.keepAliveTime(this.profile.getKeepAliveTimeMillis(), TimeUnit.MILLISECONDS)
+                    .keepAliveTimeout(this.profile.getKeepAliveTimeoutMillis(), TimeUnit.MILLISECONDS)
+                    .keepAliveWithoutCalls(true);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Spreads calls round-robin over connections to the same target, so concurrent calls are not limited by the
+     * stream limit and single event loop thread of one HTTP/2 connection.
+     * Its connectivity state is the most usable state of any stripe, so it is ready while one connection is.
+     */
+    private static final class StripedChannel extends ManagedChannel {
+        private static final List<ConnectivityState> STATES_BY_USABILITY = List.of(ConnectivityState.READY,
+                ConnectivityState.CONNECTING, ConnectivityState.TRANSIENT_FAILURE, ConnectivityState.IDLE,
+                ConnectivityState.SHUTDOWN);
+
+        private final List<ManagedChannel> stripes;
+        private final AtomicInteger next = new AtomicInteger();
+
+        StripedChannel(List<ManagedChannel> stripes) {
+            this.stripes = stripes;
+        }
+
+        @Override
+        public <RequestT, ResponseT> ClientCall<RequestT, ResponseT> newCall(MethodDescriptor<RequestT, ResponseT> method, CallOptions callOptions) {
+            int index = Math.floorMod(this.next.getAndIncrement(), this.stripes.size());
+            return this.stripes.get(index).newCall(method, callOptions);
+        }
+
+        @Override
+        public String authority() {
+            return this.stripes.get(0).authority();
+        }
+
+        @Override
+        public ConnectivityState getState(boolean requestConnection) {
+            int best = STATES_BY_USABILITY.size() - 1;
+            for (ManagedChannel stripe : this.stripes) {
+                best = Math.min(best, STATES_BY_USABILITY.indexOf(stripe.getState(requestConnection)));
+            }
+            return STATES_BY_USABILITY.get(best);
+        }
+
+        /**
+         * Runs {@code callback} once, after a stripe changes state and the combined state is no longer {@code source}.
+         */
+        @Override
+        public void notifyWhenStateChanged(ConnectivityState source, Runnable callback) {
+            if (getState(false) != source) {
+                callback.run();
+                return;
+            }
+            AtomicBoolean notified = new AtomicBoolean();
+            for (ManagedChannel stripe : this.stripes) {
+                watchStripe(stripe, source, callback, notified);
+            }
+        }
+
+        private void watchStripe(ManagedChannel stripe, ConnectivityState source, Runnable callback, AtomicBoolean notified) {
+            stripe.notifyWhenStateChanged(stripe.getState(false), () -> {
+                if (notified.get()) {
+                    return;
+                }
+                if (getState(false) == source) {
+                    watchStripe(stripe, source, callback, notified);
+                } else if (notified.compareAndSet(false, true)) {
+                    callback.run();
+                }
+            });
+        }
+
+        @Override
+        public void resetConnectBackoff() {
+            this.stripes.forEach(ManagedChannel::resetConnectBackoff);
+        }
+
+        @Override
+        public void enterIdle() {
+            this.stripes.forEach(ManagedChannel::enterIdle);
+        }
+
+        @Override
+        public ManagedChannel shutdown() {
+            this.stripes.forEach(ManagedChannel::shutdown);
+            return this;
+        }
+
+        @Override
+        public ManagedChannel shutdownNow() {
+            this.stripes.forEach(ManagedChannel::shutdownNow);
+            return this;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return this.stripes.stream().allMatch(ManagedChannel::isShutdown);
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return this.stripes.stream().allMatch(ManagedChannel::isTerminated);
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+            for (ManagedChannel stripe : this.stripes) {
+                if (!stripe.awaitTermination(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
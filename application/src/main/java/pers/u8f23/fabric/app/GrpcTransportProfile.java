@@ -0,0 +1,88 @@
+package pers.u8f23.fabric.app;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings of the gRPC transport used by {@link GrpcTransport}. Zero values keep the gRPC and Netty defaults.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public final class GrpcTransportProfile {
+    public static final String NAME_DEFAULT = "default";
+    public static final String NAME_TUNED = "tuned";
+
+    /**
+     * gRPC defaults: shared NIO event loop and cached executor, 1 MiB initial flow control window, 4 MiB inbound
+     * messages and no keepalive.
+     */
+    public static final GrpcTransportProfile DEFAULT = new GrpcTransportProfile(false, 0, 0, 0, 0, 0, 0, 1);
+
+    /**
+     * Native epoll transport on its own event loop, a fixed executor per core, 4 MiB initial flow control window so
+     * large evaluate responses are not stalled by window updates, 64 MiB inbound messages for large queries, and
+     * keepalive at the 60 seconds minimum interval peers accept by default.
+     */
+    public static final GrpcTransportProfile TUNED = new GrpcTransportProfile(
+            true,
+            2,
+            Runtime.getRuntime().availableProcessors(),
+            4 * 1024 * 1024,
+            64 * 1024 * 1024,
+            TimeUnit.SECONDS.toMillis(60),
+            TimeUnit.SECONDS.toMillis(20),
+            1
+    );
+
+    /**
+     * Use epoll when available, falling back to NIO.
+     */
+    private final boolean nativeTransport;
+    /**
+     * Threads of an event loop owned by the transport, {@code 0} for Netty's default count, or the shared gRPC
+     * event loop when {@link #nativeTransport} is off as well.
+     */
+    private final int eventLoopThreads;
+    /**
+     * Threads of a fixed executor running call callbacks, {@code 0} for the shared gRPC cached executor.
+     */
+    private final int executorThreads;
+    private final int initialFlowControlWindow;
+    private final int maxInboundMessageSize;
+    /**
+     * Interval of keepalive pings, {@code 0} to not ping.
+     */
+    private final long keepAliveTimeMillis;
+    private final long keepAliveTimeoutMillis;
+    /**
+     * Connections opened per target, calls are spread over them round-robin.
+     */
+    private final int channels;
+
+    /**
+     * @param name {@link #NAME_DEFAULT} or {@link #NAME_TUNED}.
+     */
+    public static GrpcTransportProfile named(String name) {
+        switch (name) {
+            case NAME_DEFAULT:
+                return DEFAULT;
+            case NAME_TUNED:
+                return TUNED;
+            default:
+                throw new IllegalArgumentException("Unknown transport profile: " + name);
+        }
+    }
+
+    public GrpcTransportProfile withChannels(int channels) {
+        if (channels <= 0) {
+            throw new IllegalArgumentException("channels must be positive.");
+        }
+        return new GrpcTransportProfile(this.nativeTransport, this.eventLoopThreads, this.executorThreads,
+                this.initialFlowControlWindow, this.maxInboundMessageSize, this.keepAliveTimeMillis,
+                this.keepAliveTimeoutMillis, channels);
+    }
+}
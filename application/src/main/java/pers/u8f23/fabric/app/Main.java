@@ -1,17 +1,21 @@
 package pers.u8f23.fabric.app;
 
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import io.grpc.ChannelCredentials;
-import io.grpc.Grpc;
 import io.grpc.ManagedChannel;
 import io.grpc.TlsChannelCredentials;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.hyperledger.fabric.client.*;
 import org.hyperledger.fabric.client.identity.*;
 import org.hyperledger.fabric.protos.gateway.ErrorDetail;
 import pers.u8f23.fabric.app.api.Asset;
+import pers.u8f23.fabric.app.api.CachedAbstractAssetContractEvaluate;
 import pers.u8f23.fabric.app.api.ContractApi;
+import pers.u8f23.fabric.app.api.ContractEventListener;
+import pers.u8f23.fabric.app.api.ContractMetrics;
+import pers.u8f23.fabric.app.api.EvaluateCache;
 import pers.u8f23.fabric.app.api.ProposedSubmit;
 
 import java.io.*;
@@ -22,7 +26,11 @@ import java.security.InvalidKeyException;
 import java.security.PrivateKey;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
@@ -39,30 +47,31 @@ public class Main {
     private static final Path CERT_DIR_PATH = CRYPTO_PATH.resolve(Paths.get("users/User1@org1.example.com/msp/signcerts"));
     // Path to user private key directory.
     private static final Path KEY_DIR_PATH = CRYPTO_PATH.resolve(Paths.get("users/User1@org1.example.com/msp/keystore"));
-    // Path to peer tls certificate.
-    private static final Path TLS_CERT_PATH = CRYPTO_PATH.resolve(Paths.get("peers/peer0.org1.example.com/tls/ca.crt"));
-
-    // Gateway peer end point.
-    private static final String PEER_ENDPOINT = String.format("%s:7051", BuildConfig.GATEWAY_HOST);
-    private static final String OVERRIDE_AUTH = "peer0.org1.example.com";
+    // both attempts of a hedged evaluate run on the pool, so it also caps the routed evaluates in flight.
+    private static final int EVALUATE_THREADS = 8;
 
     public static void main(String[] args) throws Exception {
-        ManagedChannel channel = newGrpcConnection();
-
-        Gateway.Builder builder = Gateway.newInstance()
-                .identity(newIdentity())
-                .signer(newSigner())
-                .hash(Hash.SHA256)
-                .connection(channel)
-                // Default timeouts for different gRPC calls
-                .evaluateOptions(options -> options.withDeadlineAfter(5, TimeUnit.SECONDS))
-                .endorseOptions(options -> options.withDeadlineAfter(15, TimeUnit.SECONDS))
-                .submitOptions(options -> options.withDeadlineAfter(5, TimeUnit.SECONDS))
-                .commitStatusOptions(options -> options.withDeadlineAfter(1, TimeUnit.MINUTES));
-
-        try (Gateway gateway = builder.connect()) {
-            log.info("gateway connected");
-            chaincodeOperations(gateway);
+        Identity identity = newIdentity();
+        Signer signer = newSigner();
+        GrpcTransport transport = new GrpcTransport(GrpcTransportProfile.named(BuildConfig.GATEWAY_TRANSPORT)
+                .withChannels(BuildConfig.GATEWAY_CHANNELS_PER_PEER));
+        log.info("gRPC transport: {}", transport.getProfile());
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        Gson gson = ContractApi.newGsonBuilder().create();
+        ContractMetrics metrics = new MicrometerContractMetrics(meterRegistry);
+        ExecutorService hedgeExecutor = Executors.newFixedThreadPool(EVALUATE_THREADS);
+        List<GatewayPool.Endpoint> endpoints = new ArrayList<>();
+        GatewayPool<ContractApi> pool = null;
+        try {
+            for (String peer : BuildConfig.GATEWAY_PEERS.split(",")) {
+                String[] hostAndPort = peer.trim().split(":");
+                endpoints.add(newEndpoint(transport, identity, signer, hostAndPort[0], Integer.parseInt(hostAndPort[1])));
+            }
+            pool = new GatewayPool<>(endpoints,
+                    gateway -> new ContractApi(gateway.getNetwork(CHANNEL_NAME).getContract(CHAINCODE_NAME), gson, metrics),
+                    hedgeExecutor, BuildConfig.GATEWAY_HEDGE_PERCENTILE);
+            log.info("gateways connected");
+            chaincodeOperations(pool);
         } catch (GatewayException e) {
             log.error("GatewayException caught, detail size: {}", e.getDetails().size(), new RuntimeException(e));
             List<ErrorDetail> details = e.getDetails();
@@ -70,32 +79,98 @@ public class Main {
         } catch (Exception e) {
             log.error("Exception caught", new RuntimeException(e));
         } finally {
-            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
-            log.info("gateway shutdown");
+            // without a pool, close the endpoints connected before one failed.
+            if (pool != null) {
+                pool.close();
+            } else {
+                GatewayPool.closeEndpoints(endpoints);
+            }
+            hedgeExecutor.shutdownNow();
+            transport.close();
+            log.info("gateways shutdown");
         }
+        meterRegistry.getMeters().forEach(meter -> log.info("*** Metric {}: {}", meter.getId(), meter.measure()));
     }
 
-    private static void chaincodeOperations(Gateway gateway) throws Exception {
-        Network network = gateway.getNetwork(CHANNEL_NAME);
-        Contract contract = network.getContract(CHAINCODE_NAME);
-        ContractApi api = new ContractApi(contract, new Gson());
+    private static void chaincodeOperations(GatewayPool<ContractApi> pool) throws Exception {
+        Network network = pool.getPrimaryGateway().getNetwork(CHANNEL_NAME);
+        ContractApi api = pool.getPrimaryApi();
+        ContractEventListener eventListener = new ContractEventListener(network, CHAINCODE_NAME, api.getGson())
+                .onAssetChanged((event, changes) -> log.info("*** Event {} in block {}: {}", event.getEventName(), event.getBlockNumber(), changes))
+                .onError(e -> log.warn("chaincode event listener failed", e))
+                .start();
 
-        log.info("*** Result findAllAsset(): {}", api.findAllAsset());
+        log.info("*** Result findAllAsset(): {}", pool.evaluate(ContractApi::findAllAsset));
         ProposedSubmit<Asset> proposedSubmit = api.createAsset("test wgvwr");
         log.info("*** Result proposedSubmit.blockingGetEvaluatedRes(): {}", proposedSubmit.blockingGetEvaluatedRes());
         log.info("*** Result proposedSubmit.blockingGetSubmitStatus(): {}", proposedSubmit.blockingGetSubmitStatus());
-        log.info("*** Result findAllAsset(): {}", api.findAllAsset());
+        Status asyncStatus = api.createAssetAsync("test async")
+                .thenCompose(ProposedSubmit::getSubmitStatusAsync)
+                .get(1, TimeUnit.MINUTES);
+        log.info("*** Result createAssetAsync() status: {}", asyncStatus);
+
+        List<CompletableFuture<SubmitPipeline.Result<Asset>>> results = new ArrayList<>();
+        try (CommitTracker commitTracker = new CommitTracker(network, 30, TimeUnit.SECONDS);
+             SubmitPipeline pipeline = new SubmitPipeline(64, 200, 3, api.getExecutor(), commitTracker)) {
+            for (int i = 0; i < 16; i++) {
+                String value = "pipelined " + i;
+                results.add(pipeline.submit(() -> api.createAsset(value)));
+            }
+        }
+        for (CompletableFuture<SubmitPipeline.Result<Asset>> result : results) {
+            log.info("*** Result pipelined createAsset(): {}", result.get());
+        }
+        log.info("*** Result findAllAsset(): {}", pool.evaluate(ContractApi::findAllAsset));
+        long now = System.currentTimeMillis();
+        api.findAssetsByCreateTimeIterator(now - TimeUnit.HOURS.toMillis(1), now + 1, 100)
+                .forEachRemaining(asset -> log.info("*** Result findAssetsByCreateTime(): {}", asset));
+
+        EvaluateCache cache = new EvaluateCache(10_000, 5, TimeUnit.MINUTES);
+        CachedAbstractAssetContractEvaluate cachedApi = new CachedAbstractAssetContractEvaluate(api, cache);
+        try (CacheInvalidator ignored = new CacheInvalidator(network, CHAINCODE_NAME, cache)) {
+            String assetId = proposedSubmit.blockingGetEvaluatedRes().getBody().getId();
+            log.info("*** Result cached findAsset(): {}", cachedApi.findAsset(assetId));
+            log.info("*** Result cached findAsset(): {}", cachedApi.findAsset(assetId));
+        }
+        eventListener.close();
+    }
+
+    /**
+     * @param peerHost TLS host name of the peer, reached at {@link BuildConfig#GATEWAY_HOST}.
+     */
+    private static GatewayPool.Endpoint newEndpoint(GrpcTransport transport, Identity identity, Signer signer,
+                                                    String peerHost, int port) throws IOException {
+        ManagedChannel channel = newGrpcConnection(transport, peerHost, port);
+        try {
+            Gateway gateway = Gateway.newInstance()
+                    .identity(identity)
+                    .signer(signer)
+                    .hash(Hash.SHA256)
+                    .connection(channel)
+                    // Default timeouts for different gRPC calls
+                    .evaluateOptions(options -> options.withDeadlineAfter(5, TimeUnit.SECONDS))
+                    .endorseOptions(options -> options.withDeadlineAfter(15, TimeUnit.SECONDS))
+                    .submitOptions(options -> options.withDeadlineAfter(5, TimeUnit.SECONDS))
+                    .commitStatusOptions(options -> options.withDeadlineAfter(1, TimeUnit.MINUTES))
+                    .connect();
+            return new GatewayPool.Endpoint(peerHost, channel, gateway);
+        } catch (RuntimeException e) {
+            channel.shutdownNow();
+            throw e;
+        }
     }
 
-    private static ManagedChannel newGrpcConnection() throws IOException {
-        new Gson().fromJson(new InputStreamReader(new ByteArrayInputStream("".getBytes())), new TypeToken<String>() {
-        });
+    /**
+     * @param peerHost TLS host name of the peer, reached at {@link BuildConfig#GATEWAY_HOST}.
+     */
+    private static ManagedChannel newGrpcConnection(GrpcTransport transport, String peerHost, int port) throws IOException {
+        // peer0.org1.example.com -> peerOrganizations/org1.example.com/peers/peer0.org1.example.com/tls/ca.crt
+        Path tlsCertPath = CRYPTO_HOME_PATH.resolve(Paths.get("peerOrganizations", peerHost.substring(peerHost.indexOf('.') + 1),
+                "peers", peerHost, "tls", "ca.crt"));
         ChannelCredentials credentials = TlsChannelCredentials.newBuilder()
-                .trustManager(TLS_CERT_PATH.toFile())
-                .build();
-        return Grpc.newChannelBuilder(PEER_ENDPOINT, credentials)
-                .overrideAuthority(OVERRIDE_AUTH)
+                .trustManager(tlsCertPath.toFile())
                 .build();
+        return transport.newChannel(String.format("%s:%d", BuildConfig.GATEWAY_HOST, port), credentials, peerHost);
     }
 
     private static Identity newIdentity() throws IOException, CertificateException {
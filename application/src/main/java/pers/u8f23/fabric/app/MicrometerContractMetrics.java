@@ -0,0 +1,79 @@
+package pers.u8f23.fabric.app;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import pers.u8f23.fabric.app.api.ContractMetrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records {@link ContractMetrics} to a Micrometer registry as
+ * <ul>
+ *     <li>{@code fabric.contract.latency}: timer with percentile histogram, tagged by {@code method} and {@code phase}.</li>
+ *     <li>{@code fabric.contract.errors}: counter tagged by {@code method}, {@code phase} and {@code status}.</li>
+ *     <li>{@code fabric.contract.inflight}: gauge of blocking calls, tagged by {@code method}.</li>
+ * </ul>
+ * Meters are registered on first use and then looked up without allocating.
+ */
+@RequiredArgsConstructor
+public final class MicrometerContractMetrics implements ContractMetrics {
+    private static final String LATENCY_METER_NAME = "fabric.contract.latency";
+    private static final String ERRORS_METER_NAME = "fabric.contract.errors";
+    private static final String IN_FLIGHT_METER_NAME = "fabric.contract.inflight";
+
+    private final MeterRegistry registry;
+    private final Map<String, Map<String, Timer>> timers = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Map<String, Counter>>> errors = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    @Override
+    public void recordLatency(String method, String phase, long nanos) {
+        Map<String, Timer> phaseTimers = this.timers.get(method);
+        if (phaseTimers == null) {
+            phaseTimers = this.timers.computeIfAbsent(method, __ -> new ConcurrentHashMap<>());
+        }
+        Timer timer = phaseTimers.get(phase);
+        if (timer == null) {
+            timer = phaseTimers.computeIfAbsent(phase, __ -> Timer.builder(LATENCY_METER_NAME)
+                    .tags("method", method, "phase", phase)
+                    .publishPercentileHistogram()
+                    .register(this.registry));
+        }
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordError(String method, String phase, String status) {
+        Map<String, Map<String, Counter>> phaseErrors = this.errors.get(method);
+        if (phaseErrors == null) {
+            phaseErrors = this.errors.computeIfAbsent(method, __ -> new ConcurrentHashMap<>());
+        }
+        Map<String, Counter> statusErrors = phaseErrors.get(phase);
+        if (statusErrors == null) {
+            statusErrors = phaseErrors.computeIfAbsent(phase, __ -> new ConcurrentHashMap<>());
+        }
+        Counter counter = statusErrors.get(status);
+        if (counter == null) {
+            counter = statusErrors.computeIfAbsent(status, __ -> Counter.builder(ERRORS_METER_NAME)
+                    .tags("method", method, "phase", phase, "status", status)
+                    .register(this.registry));
+        }
+        counter.increment();
+    }
+
+    @Override
+    public void addInFlight(String method, int delta) {
+        AtomicInteger gauge = this.inFlight.get(method);
+        if (gauge == null) {
+            gauge = this.inFlight.computeIfAbsent(method,
+                    __ -> this.registry.gauge(IN_FLIGHT_METER_NAME, Tags.of("method", method), new AtomicInteger()));
+        }
+        gauge.addAndGet(delta);
+    }
+}
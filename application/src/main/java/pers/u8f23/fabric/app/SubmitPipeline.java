@@ -0,0 +1,163 @@
+package pers.u8f23.fabric.app;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.fabric.client.Status;
+import org.hyperledger.fabric.protos.peer.TxValidationCode;
+import pers.u8f23.fabric.app.api.ProposedSubmit;
+import pers.u8f23.fabric.app.api.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipelined submitter keeping at most {@code maxInFlight} transactions between endorsement and commit status.
+ * <p>
+ * {@link #submit} blocks the caller while the window is full or the rate limit is reached, so a producer pushing
+ * a stream of submits is slowed down to what the peer can take. Transactions invalidated by MVCC or phantom read
+ * conflicts are submitted again, up to {@code maxRetries} times.
+ */
+@Slf4j
+public final class SubmitPipeline implements AutoCloseable {
+    private final int maxInFlight;
+    private final int maxRetries;
+    private final long intervalNanos;
+    private final Executor executor;
+    private final CommitTracker commitTracker;
+    private final Semaphore window;
+    private long nextSlotNanos = System.nanoTime();
+
+    /**
+     * @param maxPerSecond max transactions submitted per second including retries, non-positive for unlimited.
+     * @param executor     executor running endorsement, submission and commit status waiting.
+     */
+    public SubmitPipeline(int maxInFlight, int maxPerSecond, int maxRetries, Executor executor) {
+        this(maxInFlight, maxPerSecond, maxRetries, executor, null);
+    }
+
+    /**
+     * @param commitTracker shared block event tracker resolving commit status, or {@code null} to request the
+     *                      status of each transaction separately.
+     */
+    public SubmitPipeline(int maxInFlight, int maxPerSecond, int maxRetries, Executor executor, CommitTracker commitTracker) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive.");
+        }
+        this.maxInFlight = maxInFlight;
+        this.maxRetries = Math.max(0, maxRetries);
+        this.intervalNanos = maxPerSecond <= 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / maxPerSecond;
+        this.executor = executor;
+        this.commitTracker = commitTracker;
+        this.window = new Semaphore(maxInFlight);
+    }
+
+    @FunctionalInterface
+    public interface SubmitCall<T> {
+        ProposedSubmit<T> submit() throws Exception;
+    }
+
+    @Getter
+    @ToString
+    @RequiredArgsConstructor
+    public static final class Result<T> {
+        private final String transactionId;
+        private final Status status;
+        private final Response<T> response;
+        private final int attempts;
+        /**
+         * From entering the window to the commit status of the last attempt.
+         */
+        private final long latencyNanos;
+    }
+
+    /**
+     * Wait for a free slot in the window and start the transaction.
+     *
+     * @return future completed with the commit status of the last attempt, or exceptionally if endorsement or
+     * submission failed.
+     */
+    public <T> CompletableFuture<Result<T>> submit(SubmitCall<T> call) throws InterruptedException {
+        this.window.acquire();
+        long startNanos = System.nanoTime();
+        CompletableFuture<Result<T>> future;
+        try {
+            future = CompletableFuture
+                    .supplyAsync(() -> attempt(call, startNanos, 1), this.executor)
+                    .thenCompose(f -> f);
+        } catch (RuntimeException e) {
+            this.window.release();
+            throw e;
+        }
+        return future.whenComplete((result, e) -> this.window.release());
+    }
+
+    public <T> List<CompletableFuture<Result<T>>> submitAll(Iterable<? extends SubmitCall<T>> calls) throws InterruptedException {
+        List<CompletableFuture<Result<T>>> futures = new ArrayList<>();
+        for (SubmitCall<T> call : calls) {
+            futures.add(submit(call));
+        }
+        return futures;
+    }
+
+    /**
+     * Wait until every submitted transaction has completed.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        this.window.acquire(this.maxInFlight);
+        this.window.release(this.maxInFlight);
+    }
+
+    private <T> CompletableFuture<Result<T>> attempt(SubmitCall<T> call, long startNanos, int attempts) {
+        ProposedSubmit<T> proposed;
+        try {
+            acquireRateSlot();
+            proposed = call.submit();
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+        CompletableFuture<Status> statusFuture = this.commitTracker == null
+                ? proposed.getSubmitStatusAsync()
+                : this.commitTracker.track(proposed);
+        return statusFuture.thenCompose(status -> {
+            if (isConflict(status) && attempts <= this.maxRetries) {
+                log.debug("transaction {} invalidated by {}, retry {}", status.getTransactionId(), status.getCode(), attempts);
+                return CompletableFuture
+                        .supplyAsync(() -> attempt(call, startNanos, attempts + 1), this.executor)
+                        .thenCompose(f -> f);
+            }
+            long latencyNanos = System.nanoTime() - startNanos;
+            Response<T> response = status.isSuccessful() ? proposed.blockingGetEvaluatedRes() : null;
+            return CompletableFuture.completedFuture(
+                    new Result<>(proposed.getTransactionId(), status, response, attempts, latencyNanos));
+        });
+    }
+
+    private void acquireRateSlot() throws InterruptedException {
+        if (this.intervalNanos == 0) {
+            return;
+        }
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(this.nextSlotNanos, now);
+            this.nextSlotNanos = slot + this.intervalNanos;
+            waitNanos = slot - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private static boolean isConflict(Status status) {
+        TxValidationCode code = status.getCode();
+        return code == TxValidationCode.MVCC_READ_CONFLICT || code == TxValidationCode.PHANTOM_READ_CONFLICT;
+    }
+}
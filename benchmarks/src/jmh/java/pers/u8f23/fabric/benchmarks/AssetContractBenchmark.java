@@ -0,0 +1,108 @@
+package pers.u8f23.fabric.benchmarks;
+
+import org.hyperledger.fabric.contract.Context;
+import org.openjdk.jmh.annotations.*;
+import pers.u8f23.fabric.chaincode.AssetContract;
+import pers.u8f23.fabric.chaincode.UidUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link AssetContract} transactions against {@link InMemoryChaincodeStub} holding {@code assetCount} assets.
+ * Submit benchmarks include committing the writes to the in-memory state; {@link #createAsset} discards them instead,
+ * so the state keeps its size across iterations. Run with {@code -prof gc} (enabled in the build) to see the
+ * allocation rate per operation.
+ * <p>
+ * Every transaction runs on a context from {@link AssetContract#createContext} and ends with
+ * {@link AssetContract#afterTransaction}, as under the shim, so the numbers include the metrics instrumentation when
+ * it is enabled.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class AssetContractBenchmark {
+    private static final int POPULATE_BATCH_SIZE = 1000;
+
+    @Param({"1000", "100000", "1000000"})
+    public int assetCount;
+
+    @Param({"64"})
+    public int valueLength;
+
+    private InMemoryChaincodeStub stub;
+    private AssetContract contract;
+    private String[] assetIds;
+    private String value;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder(valueLength);
+        for (int i = 0; i < valueLength; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        value = builder.toString();
+        stub = new InMemoryChaincodeStub();
+        contract = new AssetContract();
+        assetIds = new String[assetCount];
+        // one create per transaction would take minutes for the largest state, so populate in batches.
+        for (int offset = 0; offset < assetCount; offset += POPULATE_BATCH_SIZE) {
+            int size = Math.min(POPULATE_BATCH_SIZE, assetCount - offset);
+            StringBuilder values = new StringBuilder(size * (valueLength + 3)).append('[');
+            for (int i = 0; i < size; i++) {
+                values.append(i == 0 ? "\"" : ",\"").append(value).append('"');
+                assetIds[offset + i] = UidUtils.generateUid(stub.getTxTimestamp().toEpochMilli(), stub.getTxId(), i);
+            }
+            Context context = contract.createContext(stub);
+            contract.afterTransaction(context, contract.createAssets(context, values.append(']').toString()));
+            stub.commit();
+            stub.beginTransaction();
+        }
+    }
+
+    private String nextAssetId() {
+        String assetId = assetIds[cursor];
+        cursor = cursor + 1 == assetIds.length ? 0 : cursor + 1;
+        return assetId;
+    }
+
+    @Benchmark
+    public String createAsset() {
+        stub.beginTransaction();
+        Context context = contract.createContext(stub);
+        String response = contract.createAsset(context, value);
+        contract.afterTransaction(context, response);
+        return response;
+    }
+
+    @Benchmark
+    public String updateAsset() {
+        stub.beginTransaction();
+        Context context = contract.createContext(stub);
+        String response = contract.updateAsset(context, nextAssetId(), value);
+        contract.afterTransaction(context, response);
+        stub.commit();
+        return response;
+    }
+
+    @Benchmark
+    public String findAsset() {
+        stub.beginTransaction();
+        Context context = contract.createContext(stub);
+        String response = contract.findAsset(context, nextAssetId());
+        contract.afterTransaction(context, response);
+        return response;
+    }
+
+    @Benchmark
+    public String findAllAsset() {
+        stub.beginTransaction();
+        Context context = contract.createContext(stub);
+        String response = contract.findAllAsset(context);
+        contract.afterTransaction(context, response);
+        return response;
+    }
+}
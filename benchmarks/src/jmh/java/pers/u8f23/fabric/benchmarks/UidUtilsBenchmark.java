@@ -0,0 +1,77 @@
+package pers.u8f23.fabric.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pers.u8f23.fabric.chaincode.UidUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link UidUtils#generateUid}, which only depends on the transaction time and id, with the previous timestamp and
+ * CRC16 implementation, whose cost grows with the asset value length. Run with {@code -prof gc} (enabled in the build) to see the allocation rate per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UidUtilsBenchmark {
+    @Param({"16", "1024", "65536"})
+    public int valueLength;
+
+    private String txId;
+    private Instant instant;
+    private String clientId;
+    private String assetValue;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(valueLength);
+        StringBuilder value = new StringBuilder(valueLength);
+        for (int i = 0; i < valueLength; i++) {
+            // mostly ASCII with some multi-byte chars, like typical JSON asset values.
+            value.append(i % 16 == 0 ? (char) (0x4E00 + random.nextInt(0x5000)) : (char) ('a' + random.nextInt(26)));
+        }
+        txId = "4f2c1d0e9b8a7f6e5d4c3b2a19080706f5e4d3c2b1a09f8e7d6c5b4a39281706";
+        instant = Instant.ofEpochSecond(1_700_000_000L, 123_456_789);
+        clientId = "x509::CN=User1@org1.example.com,OU=client::CN=ca.org1.example.com,O=org1.example.com";
+        assetValue = value.toString();
+    }
+
+    @Benchmark
+    public String generateUid() {
+        return UidUtils.generateUid(instant.toEpochMilli(), txId, 1);
+    }
+
+    @Benchmark
+    public String generateUidLegacy() {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + Integer.BYTES + Short.BYTES * 2);
+        buffer.putLong(instant.getEpochSecond());
+        buffer.putInt(instant.getNano());
+        buffer.putShort(legacyCrc16(clientId));
+        buffer.putShort(legacyCrc16(assetValue));
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    private static short legacyCrc16(String str) {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        int crc = 0xFFFF;
+        for (byte b : bytes) {
+            crc = (crc & 0xFF00) | (crc & 0x00FF) ^ (b & 0xFF);
+            for (int j = 0; j < 8; j++) {
+                if ((crc & 0x0001) > 0) {
+                    crc = crc >> 1;
+                    crc = crc ^ 0xA001;
+                } else {
+                    crc = crc >> 1;
+                }
+            }
+        }
+        return (short) crc;
+    }
+}
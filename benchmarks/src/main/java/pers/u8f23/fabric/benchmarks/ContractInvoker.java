@@ -0,0 +1,113 @@
+package pers.u8f23.fabric.benchmarks;
+
+import com.google.protobuf.ByteString;
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.contract.ContractInterface;
+import org.hyperledger.fabric.contract.annotation.Transaction;
+import org.hyperledger.fabric.protos.peer.Response;
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routes a chaincode invocation to the {@link Transaction} method of a contract, like the shim's contract router
+ * does for the string and primitive parameters our contracts use, including the contract's context and
+ * before and after transaction hooks.
+ */
+final class ContractInvoker {
+    private static final int STATUS_OK = 200;
+    private static final int STATUS_ERROR = 500;
+
+    private final ContractInterface contract;
+    private final Map<String, Method> transactions = new HashMap<>();
+
+    ContractInvoker(ContractInterface contract) {
+        this.contract = contract;
+        for (Method method : contract.getClass().getMethods()) {
+            Transaction transaction = method.getAnnotation(Transaction.class);
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            if (transaction != null && parameterTypes.length > 0 && parameterTypes[0] == Context.class) {
+                String name = transaction.name().isEmpty() ? method.getName() : transaction.name();
+                this.transactions.put(name, method);
+            }
+        }
+    }
+
+    /**
+     * @param stub stub whose arguments are the function name, optionally qualified by the contract name, followed by
+     *             the transaction arguments.
+     */
+    Response invoke(ChaincodeStub stub) {
+        List<String> args = stub.getStringArgs();
+        if (args.isEmpty()) {
+            return error("Missing function name.", ByteString.EMPTY);
+        }
+        String function = args.get(0);
+        Method method = this.transactions.get(function.substring(function.indexOf(':') + 1));
+        if (method == null) {
+            return error("Undefined contract method called: " + function, ByteString.EMPTY);
+        }
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        if (parameterTypes.length != args.size()) {
+            return error("Wrong number of arguments for " + function + ": " + (args.size() - 1), ByteString.EMPTY);
+        }
+        Object[] values = new Object[parameterTypes.length];
+        try {
+            for (int i = 1; i < parameterTypes.length; i++) {
+                values[i] = convert(parameterTypes[i], args.get(i));
+            }
+        } catch (IllegalArgumentException e) {
+            return error("Invalid argument for " + function + ": " + e.getMessage(), ByteString.EMPTY);
+        }
+        try {
+            Context context = this.contract.createContext(stub);
+            values[0] = context;
+            this.contract.beforeTransaction(context);
+            Object result = method.invoke(this.contract, values);
+            this.contract.afterTransaction(context, result);
+            ByteString payload = result == null
+                    ? ByteString.EMPTY
+                    : ByteString.copyFrom(result.toString(), StandardCharsets.UTF_8);
+            return Response.newBuilder().setStatus(STATUS_OK).setPayload(payload).build();
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ChaincodeException) {
+                byte[] payload = ((ChaincodeException) cause).getPayload();
+                return error(cause.getMessage(), payload == null ? ByteString.EMPTY : ByteString.copyFrom(payload));
+            }
+            return error("Unexpected error: " + cause, ByteString.EMPTY);
+        } catch (IllegalAccessException e) {
+            return error("Unexpected error: " + e, ByteString.EMPTY);
+        }
+    }
+
+    private static Object convert(Class<?> type, String value) {
+        if (type == String.class) {
+            return value;
+        }
+        if (type == int.class || type == Integer.class) {
+            return Integer.parseInt(value);
+        }
+        if (type == long.class || type == Long.class) {
+            return Long.parseLong(value);
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return Boolean.parseBoolean(value);
+        }
+        throw new IllegalArgumentException("unsupported parameter type " + type.getName());
+    }
+
+    private static Response error(String message, ByteString payload) {
+        return Response.newBuilder()
+                .setStatus(STATUS_ERROR)
+                .setMessage(message == null ? "" : message)
+                .setPayload(payload)
+                .build();
+    }
+}
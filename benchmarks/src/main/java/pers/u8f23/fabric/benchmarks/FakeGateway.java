@@ -0,0 +1,69 @@
+package pers.u8f23.fabric.benchmarks;
+
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import org.hyperledger.fabric.contract.ContractInterface;
+import pers.u8f23.fabric.app.GrpcTransport;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process stand-in for a Fabric gateway peer and orderer serving one contract, for load testing the
+ * application against {@link #newChannel()} without a network or crypto material, or against
+ * {@link #newChannel(GrpcTransport)} over plaintext TCP on the loopback interface.
+ * <p>
+ * The client may use any identity and signer; {@link InMemoryChaincodeStub#CLIENT_CERT} is a ready-made
+ * certificate the contract can parse.
+ */
+public final class FakeGateway implements AutoCloseable {
+    private final String serverName;
+    private final InMemoryLedger ledger = new InMemoryLedger();
+    private final FakeGatewayService service;
+    private final Server server;
+    private final Server tcpServer;
+
+    /**
+     * @param maxMessageCount    transactions per block at most.
+     * @param batchTimeoutMillis time from the first pending transaction until its block is cut.
+     */
+    public FakeGateway(ContractInterface contract, int maxMessageCount, long batchTimeoutMillis) throws IOException {
+        this.serverName = InProcessServerBuilder.generateName();
+        this.service = new FakeGatewayService(this.ledger, contract, maxMessageCount, batchTimeoutMillis);
+        this.server = InProcessServerBuilder.forName(this.serverName)
+                .addService(this.service)
+                .build()
+                .start();
+        this.tcpServer = NettyServerBuilder.forAddress(new InetSocketAddress("127.0.0.1", 0), InsecureServerCredentials.create())
+                .addService(this.service)
+                .maxInboundMessageSize(Integer.MAX_VALUE)
+                .build()
+                .start();
+    }
+
+    public ManagedChannel newChannel() {
+        return InProcessChannelBuilder.forName(this.serverName).build();
+    }
+
+    public ManagedChannel newChannel(GrpcTransport transport) {
+        int port = ((InetSocketAddress) this.tcpServer.getListenSockets().get(0)).getPort();
+        return transport.newChannel("127.0.0.1:" + port, InsecureChannelCredentials.create(), null);
+    }
+
+    public InMemoryLedger getLedger() {
+        return this.ledger;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        this.server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        this.tcpServer.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        this.service.close();
+    }
+}
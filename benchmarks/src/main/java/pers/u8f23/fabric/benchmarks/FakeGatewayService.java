@@ -0,0 +1,291 @@
+package pers.u8f23.fabric.benchmarks;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Timestamp;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import org.hyperledger.fabric.contract.ContractInterface;
+import org.hyperledger.fabric.protos.common.ChannelHeader;
+import org.hyperledger.fabric.protos.common.Envelope;
+import org.hyperledger.fabric.protos.common.Header;
+import org.hyperledger.fabric.protos.common.Payload;
+import org.hyperledger.fabric.protos.common.SignatureHeader;
+import org.hyperledger.fabric.protos.gateway.CommitStatusRequest;
+import org.hyperledger.fabric.protos.gateway.CommitStatusResponse;
+import org.hyperledger.fabric.protos.gateway.EndorseRequest;
+import org.hyperledger.fabric.protos.gateway.EndorseResponse;
+import org.hyperledger.fabric.protos.gateway.EvaluateRequest;
+import org.hyperledger.fabric.protos.gateway.EvaluateResponse;
+import org.hyperledger.fabric.protos.gateway.GatewayGrpc;
+import org.hyperledger.fabric.protos.gateway.SignedCommitStatusRequest;
+import org.hyperledger.fabric.protos.gateway.SubmitRequest;
+import org.hyperledger.fabric.protos.gateway.SubmitResponse;
+import org.hyperledger.fabric.protos.peer.ChaincodeAction;
+import org.hyperledger.fabric.protos.peer.ChaincodeActionPayload;
+import org.hyperledger.fabric.protos.peer.ChaincodeEndorsedAction;
+import org.hyperledger.fabric.protos.peer.ChaincodeEvent;
+import org.hyperledger.fabric.protos.peer.ChaincodeInvocationSpec;
+import org.hyperledger.fabric.protos.peer.ChaincodeProposalPayload;
+import org.hyperledger.fabric.protos.peer.Proposal;
+import org.hyperledger.fabric.protos.peer.ProposalResponsePayload;
+import org.hyperledger.fabric.protos.peer.Response;
+import org.hyperledger.fabric.protos.peer.SignedProposal;
+import org.hyperledger.fabric.protos.peer.Transaction;
+import org.hyperledger.fabric.protos.peer.TransactionAction;
+import org.hyperledger.fabric.protos.peer.TxValidationCode;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gateway service endorsing, ordering and committing transactions of one contract over an {@link InMemoryLedger}.
+ * <p>
+ * Proposals are simulated on the calling thread against committed state. Submitted transactions are cut into
+ * blocks by a single orderer thread, when {@code maxMessageCount} transactions are pending or {@code batchTimeout}
+ * has passed since the first of them, and committed in order with MVCC validation of their reads. Signatures are
+ * not verified, and prepared transactions carry no read-write set.
+ */
+final class FakeGatewayService extends GatewayGrpc.GatewayImplBase implements AutoCloseable {
+    private static final int STATUS_ERROR_MIN = 400;
+    // endorsed transactions never submitted are dropped oldest first beyond this many.
+    private static final int ENDORSED_CAPACITY = 16 * 1024;
+
+    private final InMemoryLedger ledger;
+    private final ContractInvoker invoker;
+    private final int maxMessageCount;
+    private final long batchTimeoutMillis;
+    private final ScheduledExecutorService orderer;
+    private final Map<String, InMemoryChaincodeStub> endorsed = new LinkedHashMap<>(ENDORSED_CAPACITY, 0.75f) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, InMemoryChaincodeStub> eldest) {
+            return size() > ENDORSED_CAPACITY;
+        }
+    };
+    // from submit until the status has been sent once, as the client requests it once per transaction.
+    private final Map<String, CompletableFuture<CommitStatusResponse>> statuses = new ConcurrentHashMap<>();
+    // accessed by the orderer thread only.
+    private final List<InMemoryChaincodeStub> batch = new ArrayList<>();
+    private ScheduledFuture<?> batchTimeout;
+    private long nextBlockNumber = 1;
+
+    FakeGatewayService(InMemoryLedger ledger, ContractInterface contract, int maxMessageCount, long batchTimeoutMillis) {
+        if (maxMessageCount <= 0) {
+            throw new IllegalArgumentException("maxMessageCount must be positive.");
+        }
+        this.ledger = ledger;
+        this.invoker = new ContractInvoker(contract);
+        this.maxMessageCount = maxMessageCount;
+        this.batchTimeoutMillis = batchTimeoutMillis;
+        this.orderer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fake-orderer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static final class Simulation {
+        final Proposal proposal;
+        final Header header;
+        final ChaincodeInvocationSpec invocationSpec;
+        final InMemoryChaincodeStub stub;
+        final Response response;
+
+        Simulation(Proposal proposal, Header header, ChaincodeInvocationSpec invocationSpec,
+                   InMemoryChaincodeStub stub, Response response) {
+            this.proposal = proposal;
+            this.header = header;
+            this.invocationSpec = invocationSpec;
+            this.stub = stub;
+            this.response = response;
+        }
+    }
+
+    @Override
+    public void evaluate(EvaluateRequest request, StreamObserver<EvaluateResponse> responseObserver) {
+        Simulation simulation;
+        try {
+            simulation = simulate(request.getProposedTransaction());
+        } catch (InvalidProtocolBufferException | RuntimeException e) {
+            responseObserver.onError(invalidProposal(e));
+            return;
+        }
+        Response response = simulation.response;
+        if (response.getStatus() >= STATUS_ERROR_MIN) {
+            responseObserver.onError(Status.UNKNOWN
+                    .withDescription("evaluate call to endorser returned error: " + response.getMessage())
+                    .asRuntimeException());
+            return;
+        }
+        responseObserver.onNext(EvaluateResponse.newBuilder().setResult(response).build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void endorse(EndorseRequest request, StreamObserver<EndorseResponse> responseObserver) {
+        Simulation simulation;
+        try {
+            simulation = simulate(request.getProposedTransaction());
+        } catch (InvalidProtocolBufferException | RuntimeException e) {
+            responseObserver.onError(invalidProposal(e));
+            return;
+        }
+        Response response = simulation.response;
+        if (response.getStatus() >= STATUS_ERROR_MIN) {
+            responseObserver.onError(Status.ABORTED
+                    .withDescription("failed to endorse transaction: " + response.getMessage())
+                    .asRuntimeException());
+            return;
+        }
+        synchronized (this.endorsed) {
+            this.endorsed.put(simulation.stub.getTxId(), simulation.stub);
+        }
+        responseObserver.onNext(EndorseResponse.newBuilder().setPreparedTransaction(prepare(simulation)).build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void submit(SubmitRequest request, StreamObserver<SubmitResponse> responseObserver) {
+        String transactionId = request.getTransactionId();
+        InMemoryChaincodeStub stub;
+        synchronized (this.endorsed) {
+            stub = this.endorsed.remove(transactionId);
+        }
+        if (stub == null) {
+            responseObserver.onError(Status.FAILED_PRECONDITION
+                    .withDescription("transaction was not endorsed or already submitted: " + transactionId)
+                    .asRuntimeException());
+            return;
+        }
+        this.statuses.put(transactionId, new CompletableFuture<>());
+        this.orderer.execute(() -> order(stub));
+        responseObserver.onNext(SubmitResponse.getDefaultInstance());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void commitStatus(SignedCommitStatusRequest request, StreamObserver<CommitStatusResponse> responseObserver) {
+        CommitStatusRequest statusRequest;
+        try {
+            statusRequest = CommitStatusRequest.parseFrom(request.getRequest());
+        } catch (InvalidProtocolBufferException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withCause(e).asRuntimeException());
+            return;
+        }
+        String transactionId = statusRequest.getTransactionId();
+        CompletableFuture<CommitStatusResponse> status = this.statuses.get(transactionId);
+        if (status == null) {
+            responseObserver.onError(Status.NOT_FOUND
+                    .withDescription("transaction was not submitted or its status was already sent: " + transactionId)
+                    .asRuntimeException());
+            return;
+        }
+        status.thenAccept(response -> {
+            this.statuses.remove(transactionId, status);
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+        });
+    }
+
+    @Override
+    public void close() {
+        this.orderer.shutdownNow();
+    }
+
+    private Simulation simulate(SignedProposal signedProposal) throws InvalidProtocolBufferException {
+        Proposal proposal = Proposal.parseFrom(signedProposal.getProposalBytes());
+        Header header = Header.parseFrom(proposal.getHeader());
+        ChannelHeader channelHeader = ChannelHeader.parseFrom(header.getChannelHeader());
+        SignatureHeader signatureHeader = SignatureHeader.parseFrom(header.getSignatureHeader());
+        ChaincodeProposalPayload proposalPayload = ChaincodeProposalPayload.parseFrom(proposal.getPayload());
+        ChaincodeInvocationSpec invocationSpec = ChaincodeInvocationSpec.parseFrom(proposalPayload.getInput());
+        Timestamp timestamp = channelHeader.getTimestamp();
+        List<byte[]> args = new ArrayList<>();
+        for (ByteString arg : invocationSpec.getChaincodeSpec().getInput().getArgsList()) {
+            args.add(arg.toByteArray());
+        }
+        InMemoryChaincodeStub stub = new InMemoryChaincodeStub(
+                this.ledger,
+                channelHeader.getTxId(),
+                Instant.ofEpochSecond(timestamp.getSeconds(), timestamp.getNanos()),
+                signatureHeader.getCreator().toByteArray(),
+                args
+        );
+        Response response = this.invoker.invoke(stub);
+        return new Simulation(proposal, header, invocationSpec, stub, response);
+    }
+
+    /**
+     * Wraps the simulation result the way the client reads it back from the prepared transaction.
+     */
+    private static Envelope prepare(Simulation simulation) {
+        ChaincodeEvent event = simulation.stub.getEvent();
+        ChaincodeAction chaincodeAction = ChaincodeAction.newBuilder()
+                .setResponse(simulation.response)
+                .setEvents(event == null ? ByteString.EMPTY : event.toByteString())
+                .setChaincodeId(simulation.invocationSpec.getChaincodeSpec().getChaincodeId())
+                .build();
+        ProposalResponsePayload responsePayload = ProposalResponsePayload.newBuilder()
+                .setExtension(chaincodeAction.toByteString())
+                .build();
+        ChaincodeActionPayload actionPayload = ChaincodeActionPayload.newBuilder()
+                .setChaincodeProposalPayload(simulation.proposal.getPayload())
+                .setAction(ChaincodeEndorsedAction.newBuilder()
+                        .setProposalResponsePayload(responsePayload.toByteString()))
+                .build();
+        Transaction transaction = Transaction.newBuilder()
+                .addActions(TransactionAction.newBuilder()
+                        .setHeader(simulation.header.getSignatureHeader())
+                        .setPayload(actionPayload.toByteString()))
+                .build();
+        Payload payload = Payload.newBuilder()
+                .setHeader(simulation.header)
+                .setData(transaction.toByteString())
+                .build();
+        return Envelope.newBuilder().setPayload(payload.toByteString()).build();
+    }
+
+    private void order(InMemoryChaincodeStub stub) {
+        this.batch.add(stub);
+        if (this.batch.size() >= this.maxMessageCount) {
+            cutBlock();
+        } else if (this.batch.size() == 1) {
+            this.batchTimeout = this.orderer.schedule(this::cutBlock, this.batchTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void cutBlock() {
+        if (this.batchTimeout != null) {
+            this.batchTimeout.cancel(false);
+            this.batchTimeout = null;
+        }
+        if (this.batch.isEmpty()) {
+            return;
+        }
+        long blockNumber = this.nextBlockNumber++;
+        for (InMemoryChaincodeStub stub : this.batch) {
+            TxValidationCode code = stub.commit() ? TxValidationCode.VALID : TxValidationCode.MVCC_READ_CONFLICT;
+            this.statuses.get(stub.getTxId()).complete(CommitStatusResponse.newBuilder()
+                    .setResult(code)
+                    .setBlockNumber(blockNumber)
+                    .build());
+        }
+        this.batch.clear();
+    }
+
+    private static RuntimeException invalidProposal(Exception e) {
+        return Status.INVALID_ARGUMENT
+                .withDescription("failed to simulate proposal: " + e.getMessage())
+                .withCause(e)
+                .asRuntimeException();
+    }
+}
@@ -0,0 +1,466 @@
+package pers.u8f23.fabric.benchmarks;
+
+import com.google.protobuf.ByteString;
+import org.hyperledger.fabric.protos.msp.SerializedIdentity;
+import org.hyperledger.fabric.protos.peer.ChaincodeEvent;
+import org.hyperledger.fabric.protos.peer.QueryResponseMetadata;
+import org.hyperledger.fabric.protos.peer.SignedProposal;
+import org.hyperledger.fabric.shim.Chaincode;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+
+/**
+ * Chaincode stub over an {@link InMemoryLedger}, standing in for the peer when running contracts in process.
+ * <p>
+ * Like the peer, reads only see committed state: writes of a transaction are buffered until {@link #commit()}, and
+ * {@link #beginTransaction()} discards the writes of a transaction that was not committed. Versions of read keys are
+ * recorded so the commit can be validated. Range queries follow the shim's key conventions, so simple key ranges skip
+ * composite keys, and keys are ordered by their UTF-8 bytes like on the peer. The default creator is a fixed X.509
+ * identity, so a real {@link org.hyperledger.fabric.contract.Context} and its client identity can be built from this
+ * stub.
+ * <p>
+ * A stub is used by one thread at a time.
+ */
+public final class InMemoryChaincodeStub implements ChaincodeStub {
+    public static final String MSP_ID = "Org1MSP";
+    /**
+     * Certificate of the default creator. The matching private key is not kept, since nothing verifies signatures.
+     */
+    public static final String CLIENT_CERT = "-----BEGIN CERTIFICATE-----\n"
+            + "MIICMTCCAdigAwIBAgITEUEF3abSRWWqGUoMu0Df+cnFqzAKBggqhkjOPQQDAjBu\n"
+            + "MQswCQYDVQQGEwJVUzEXMBUGA1UECAwOTm9ydGggQ2Fyb2xpbmExFDASBgNVBAoM\n"
+            + "C0h5cGVybGVkZ2VyMQ8wDQYDVQQLDAZjbGllbnQxHzAdBgNVBAMMFlVzZXIxQG9y\n"
+            + "ZzEuZXhhbXBsZS5jb20wIBcNMjYxMDE4MDcyMzEyWhgPMjEyNjA5MjQwNzIzMTJa\n"
+            + "MG4xCzAJBgNVBAYTAlVTMRcwFQYDVQQIDA5Ob3J0aCBDYXJvbGluYTEUMBIGA1UE\n"
+            + "CgwLSHlwZXJsZWRnZXIxDzANBgNVBAsMBmNsaWVudDEfMB0GA1UEAwwWVXNlcjFA\n"
+            + "b3JnMS5leGFtcGxlLmNvbTBZMBMGByqGSM49AgEGCCqGSM49AwEHA0IABDZYn3GP\n"
+            + "Xh9BfZbS1zW55xDcqOcQlaoIGdAuYMohMVLPA3UATaQC7c+Os1IQFaVovln0yPkQ\n"
+            + "il0V1Rmt7bEXugGjUzBRMB0GA1UdDgQWBBTwTKq3ebLP9JcHsG9JTPq1OIm+ODAf\n"
+            + "BgNVHSMEGDAWgBTwTKq3ebLP9JcHsG9JTPq1OIm+ODAPBgNVHRMBAf8EBTADAQH/\n"
+            + "MAoGCCqGSM49BAMCA0cAMEQCIBlEVG09Cb++W2tfBfvnOUzn2+YmDoU+rRASS3UB\n"
+            + "RcRRAiB9ZaR+aABitFRpl76cUIFlm5cg5e9EAqNd61ORBW5nmg==\n"
+            + "-----END CERTIFICATE-----\n";
+    private static final String CHANNEL_ID = "benchmark";
+    private static final String UNSPECIFIED_START_KEY = "\u0001";
+    private static final String MAX_UNICODE_RUNE = "\udbff\udfff";
+    private static final long START_EPOCH_MILLI = 1_700_000_000_000L;
+    private static final byte[] DEFAULT_CREATOR = SerializedIdentity.newBuilder()
+            .setMspid(MSP_ID)
+            .setIdBytes(ByteString.copyFromUtf8(CLIENT_CERT))
+            .build()
+            .toByteArray();
+
+    private final InMemoryLedger ledger;
+    private final byte[] creator;
+    private final List<byte[]> args;
+    private final Map<String, Long> reads = new HashMap<>();
+    // a null value marks a deleted key.
+    private final Map<String, byte[]> writes = new LinkedHashMap<>();
+    private long txCount;
+    private String txId;
+    private Instant txTimestamp;
+    private ChaincodeEvent event;
+
+    public InMemoryChaincodeStub() {
+        this(new InMemoryLedger());
+    }
+
+    public InMemoryChaincodeStub(InMemoryLedger ledger) {
+        this.ledger = ledger;
+        this.creator = DEFAULT_CREATOR;
+        this.args = Collections.emptyList();
+        beginTransaction();
+    }
+
+    /**
+     * Stub of a single transaction proposed by {@code creator}, a serialized identity.
+     *
+     * @param args function name followed by the transaction arguments.
+     */
+    public InMemoryChaincodeStub(InMemoryLedger ledger, String txId, Instant txTimestamp, byte[] creator,
+                                 List<byte[]> args) {
+        this.ledger = ledger;
+        this.creator = creator;
+        this.args = args;
+        this.txId = txId;
+        this.txTimestamp = txTimestamp;
+    }
+
+    /**
+     * Starts a new transaction with a unique id and a timestamp one millisecond after the previous one.
+     */
+    public void beginTransaction() {
+        this.txCount++;
+        this.txId = String.format("%064x", this.txCount);
+        this.txTimestamp = Instant.ofEpochMilli(START_EPOCH_MILLI + this.txCount);
+        this.event = null;
+        this.reads.clear();
+        this.writes.clear();
+    }
+
+    /**
+     * Applies the writes of the current transaction to the ledger.
+     *
+     * @return {@code false} when a key read by the transaction was changed meanwhile, in which case nothing is
+     * written.
+     */
+    public boolean commit() {
+        boolean valid = this.ledger.commit(this.reads, this.writes);
+        this.reads.clear();
+        this.writes.clear();
+        return valid;
+    }
+
+    public InMemoryLedger getLedger() {
+        return this.ledger;
+    }
+
+    @Override
+    public List<byte[]> getArgs() {
+        return this.args;
+    }
+
+    @Override
+    public List<String> getStringArgs() {
+        List<String> stringArgs = new ArrayList<>(this.args.size());
+        for (byte[] arg : this.args) {
+            stringArgs.add(new String(arg, StandardCharsets.UTF_8));
+        }
+        return stringArgs;
+    }
+
+    @Override
+    public String getFunction() {
+        return this.args.isEmpty() ? null : new String(this.args.get(0), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public List<String> getParameters() {
+        List<String> stringArgs = getStringArgs();
+        return stringArgs.isEmpty() ? stringArgs : stringArgs.subList(1, stringArgs.size());
+    }
+
+    @Override
+    public String getTxId() {
+        return this.txId;
+    }
+
+    @Override
+    public String getChannelId() {
+        return CHANNEL_ID;
+    }
+
+    @Override
+    public Chaincode.Response invokeChaincode(String chaincodeName, List<byte[]> args, String channel) {
+        throw new UnsupportedOperationException("invokeChaincode");
+    }
+
+    @Override
+    public byte[] getState(String key) {
+        InMemoryLedger.VersionedValue value = this.ledger.get(key);
+        this.reads.putIfAbsent(key, value == null ? InMemoryLedger.ABSENT : value.version);
+        return value == null ? null : value.value;
+    }
+
+    @Override
+    public byte[] getStateValidationParameter(String key) {
+        throw new UnsupportedOperationException("getStateValidationParameter");
+    }
+
+    @Override
+    public void putState(String key, byte[] value) {
+        if (value == null || value.length == 0) {
+            throw new IllegalArgumentException("Value must not be empty: " + key);
+        }
+        this.writes.put(key, value);
+    }
+
+    @Override
+    public void setStateValidationParameter(String key, byte[] value) {
+        throw new UnsupportedOperationException("setStateValidationParameter");
+    }
+
+    @Override
+    public void delState(String key) {
+        this.writes.put(key, null);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByRange(String startKey, String endKey) {
+        return query(startKey, endKey, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByRangeWithPagination(
+            String startKey, String endKey, int pageSize, String bookmark) {
+        String start = bookmark == null || bookmark.isEmpty() ? startKey : bookmark;
+        return query(start, endKey, pageSize);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(String compositeKey) {
+        return query(compositeKey, compositeKey + MAX_UNICODE_RUNE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(String objectType, String... attributes) {
+        return getStateByPartialCompositeKey(new CompositeKey(objectType, attributes));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(CompositeKey compositeKey) {
+        return getStateByPartialCompositeKey(compositeKey.toString());
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByPartialCompositeKeyWithPagination(
+            CompositeKey compositeKey, int pageSize, String bookmark) {
+        String prefix = compositeKey.toString();
+        String start = bookmark == null || bookmark.isEmpty() ? prefix : bookmark;
+        return query(start, prefix + MAX_UNICODE_RUNE, pageSize);
+    }
+
+    @Override
+    public CompositeKey createCompositeKey(String objectType, String... attributes) {
+        return new CompositeKey(objectType, attributes);
+    }
+
+    @Override
+    public CompositeKey splitCompositeKey(String compositeKey) {
+        return CompositeKey.parseCompositeKey(compositeKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getQueryResult(String query) {
+        throw new UnsupportedOperationException("getQueryResult");
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getQueryResultWithPagination(
+            String query, int pageSize, String bookmark) {
+        throw new UnsupportedOperationException("getQueryResultWithPagination");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyModification> getHistoryForKey(String key) {
+        throw new UnsupportedOperationException("getHistoryForKey");
+    }
+
+    @Override
+    public byte[] getPrivateData(String collection, String key) {
+        throw new UnsupportedOperationException("getPrivateData");
+    }
+
+    @Override
+    public byte[] getPrivateDataHash(String collection, String key) {
+        throw new UnsupportedOperationException("getPrivateDataHash");
+    }
+
+    @Override
+    public byte[] getPrivateDataValidationParameter(String collection, String key) {
+        throw new UnsupportedOperationException("getPrivateDataValidationParameter");
+    }
+
+    @Override
+    public void putPrivateData(String collection, String key, byte[] value) {
+        throw new UnsupportedOperationException("putPrivateData");
+    }
+
+    @Override
+    public void setPrivateDataValidationParameter(String collection, String key, byte[] value) {
+        throw new UnsupportedOperationException("setPrivateDataValidationParameter");
+    }
+
+    @Override
+    public void delPrivateData(String collection, String key) {
+        throw new UnsupportedOperationException("delPrivateData");
+    }
+
+    @Override
+    public void purgePrivateData(String collection, String key) {
+        throw new UnsupportedOperationException("purgePrivateData");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByRange(String collection, String startKey, String endKey) {
+        throw new UnsupportedOperationException("getPrivateDataByRange");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(String collection, String compositeKey) {
+        throw new UnsupportedOperationException("getPrivateDataByPartialCompositeKey");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(
+            String collection, CompositeKey compositeKey) {
+        throw new UnsupportedOperationException("getPrivateDataByPartialCompositeKey");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(
+            String collection, String objectType, String... attributes) {
+        throw new UnsupportedOperationException("getPrivateDataByPartialCompositeKey");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataQueryResult(String collection, String query) {
+        throw new UnsupportedOperationException("getPrivateDataQueryResult");
+    }
+
+    @Override
+    public void setEvent(String name, byte[] payload) {
+        this.event = ChaincodeEvent.newBuilder()
+                .setEventName(name)
+                .setTxId(this.txId)
+                .setPayload(ByteString.copyFrom(payload))
+                .build();
+    }
+
+    @Override
+    public ChaincodeEvent getEvent() {
+        return this.event;
+    }
+
+    @Override
+    public SignedProposal getSignedProposal() {
+        throw new UnsupportedOperationException("getSignedProposal");
+    }
+
+    @Override
+    public Instant getTxTimestamp() {
+        return this.txTimestamp;
+    }
+
+    @Override
+    public byte[] getCreator() {
+        return this.creator;
+    }
+
+    @Override
+    public Map<String, byte[]> getTransient() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public byte[] getBinding() {
+        throw new UnsupportedOperationException("getBinding");
+    }
+
+    @Override
+    public String getMspId() {
+        return MSP_ID;
+    }
+
+    /**
+     * Keys from {@code startKey} inclusive to {@code endKey} exclusive; empty keys leave the range open, except that
+     * an open start still skips composite keys.
+     */
+    private Results query(String startKey, String endKey, int limit) {
+        String start = startKey == null || startKey.isEmpty() ? UNSPECIFIED_START_KEY : startKey;
+        String end = endKey == null || endKey.isEmpty() ? null : endKey;
+        return new Results(this.ledger.range(start, end), limit);
+    }
+
+    private static final class Pair implements KeyValue {
+        private final String key;
+        private final byte[] value;
+
+        Pair(String key, byte[] value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public String getKey() {
+            return this.key;
+        }
+
+        @Override
+        public byte[] getValue() {
+            return this.value;
+        }
+
+        @Override
+        public String getStringValue() {
+            return new String(this.value, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Iterates the range lazily, so scanning a large state does not copy it first.
+     */
+    private static final class Results
+            implements QueryResultsIterator<KeyValue>, QueryResultsIteratorWithMetadata<KeyValue> {
+        private final NavigableMap<String, InMemoryLedger.VersionedValue> range;
+        private final int limit;
+
+        Results(NavigableMap<String, InMemoryLedger.VersionedValue> range, int limit) {
+            this.range = range;
+            this.limit = limit;
+        }
+
+        @Override
+        public Iterator<KeyValue> iterator() {
+            Iterator<Map.Entry<String, InMemoryLedger.VersionedValue>> entries = this.range.entrySet().iterator();
+            return new Iterator<KeyValue>() {
+                private int count;
+
+                @Override
+                public boolean hasNext() {
+                    return this.count < Results.this.limit && entries.hasNext();
+                }
+
+                @Override
+                public KeyValue next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    this.count++;
+                    Map.Entry<String, InMemoryLedger.VersionedValue> entry = entries.next();
+                    return new Pair(entry.getKey(), entry.getValue().value);
+                }
+            };
+        }
+
+        /**
+         * Like the peer, the bookmark is the first key after the page, or empty when the range is exhausted.
+         */
+        @Override
+        public QueryResponseMetadata getMetadata() {
+            int count = 0;
+            String bookmark = "";
+            for (String key : this.range.keySet()) {
+                if (count == this.limit) {
+                    bookmark = key;
+                    break;
+                }
+                count++;
+            }
+            return QueryResponseMetadata.newBuilder()
+                    .setFetchedRecordsCount(count)
+                    .setBookmark(bookmark)
+                    .build();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package pers.u8f23.fabric.benchmarks;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * World state shared by {@link InMemoryChaincodeStub}s, with a version per key for MVCC validation.
+ * <p>
+ * Reads may run concurrently with commits. Commits are serialized, and a transaction is only applied when every
+ * key it read still has the version it saw, like the peer's read set validation. Range queries are not
+ * re-validated, so phantom reads are not detected.
+ * <p>
+ * Keys are ordered by code point, which is the order of their UTF-8 bytes on the peer. Plain {@link String} order
+ * differs for keys holding both supplementary characters and chars from U+E000 to U+FFFF.
+ */
+public final class InMemoryLedger {
+    /**
+     * Version recorded for a key that did not exist when it was read.
+     */
+    public static final long ABSENT = -1;
+
+    private static final Comparator<String> CODE_POINT_ORDER = InMemoryLedger::compareCodePoints;
+
+    private final ConcurrentNavigableMap<String, VersionedValue> state = new ConcurrentSkipListMap<>(CODE_POINT_ORDER);
+    private long version;
+
+    static final class VersionedValue {
+        final byte[] value;
+        final long version;
+
+        VersionedValue(byte[] value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+
+    VersionedValue get(String key) {
+        return this.state.get(key);
+    }
+
+    /**
+     * Keys from {@code startKey} inclusive, to {@code endKey} exclusive or the last key when {@code endKey} is
+     * {@code null}.
+     */
+    NavigableMap<String, VersionedValue> range(String startKey, String endKey) {
+        return endKey == null
+                ? this.state.tailMap(startKey, true)
+                : this.state.subMap(startKey, true, endKey, false);
+    }
+
+    /**
+     * @param reads  versions of the keys read by the transaction, {@link #ABSENT} for missing keys.
+     * @param writes written values, {@code null} for deleted keys.
+     * @return {@code false} without applying any write if a read key was changed since it was read.
+     */
+    public synchronized boolean commit(Map<String, Long> reads, Map<String, byte[]> writes) {
+        for (Map.Entry<String, Long> read : reads.entrySet()) {
+            VersionedValue current = this.state.get(read.getKey());
+            long currentVersion = current == null ? ABSENT : current.version;
+            if (currentVersion != read.getValue()) {
+                return false;
+            }
+        }
+        long nextVersion = ++this.version;
+        for (Map.Entry<String, byte[]> write : writes.entrySet()) {
+            if (write.getValue() == null) {
+                this.state.remove(write.getKey());
+            } else {
+                this.state.put(write.getKey(), new VersionedValue(write.getValue(), nextVersion));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares chars like {@link String#compareTo(String)} up to the first difference. Surrogates only sort below
+     * U+E000 to U+FFFF in UTF-16, so when both differing chars are at least U+D800, they are shifted to put
+     * surrogates above that block, matching code point order for well-formed strings.
+     */
+    private static int compareCodePoints(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            char ca = a.charAt(i);
+            char cb = b.charAt(i);
+            if (ca != cb) {
+                if (ca >= Character.MIN_SURROGATE && cb >= Character.MIN_SURROGATE) {
+                    return shiftSurrogates(ca) - shiftSurrogates(cb);
+                }
+                return ca - cb;
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    private static int shiftSurrogates(char c) {
+        return c > Character.MAX_SURROGATE ? c - 0x800 : c + 0x2000;
+    }
+
+    /**
+     * Number of keys, including composite keys.
+     */
+    public int size() {
+        return this.state.size();
+    }
+}
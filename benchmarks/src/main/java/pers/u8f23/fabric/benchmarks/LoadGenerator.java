@@ -0,0 +1,242 @@
+package pers.u8f23.fabric.benchmarks;
+
+import io.grpc.ManagedChannel;
+import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.Hash;
+import org.hyperledger.fabric.client.identity.Identities;
+import org.hyperledger.fabric.client.identity.Identity;
+import org.hyperledger.fabric.client.identity.Signer;
+import org.hyperledger.fabric.client.identity.Signers;
+import org.hyperledger.fabric.client.identity.X509Identity;
+import pers.u8f23.fabric.app.GrpcTransport;
+import pers.u8f23.fabric.app.GrpcTransportProfile;
+import pers.u8f23.fabric.app.SubmitPipeline;
+import pers.u8f23.fabric.app.api.Asset;
+import pers.u8f23.fabric.app.api.ContractApi;
+import pers.u8f23.fabric.chaincode.AssetContract;
+
+import java.io.StringReader;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the generated {@link ContractApi} against a {@link FakeGateway}, so the numbers only contain client,
+ * gRPC and contract overhead.
+ * <p>
+ * Usage: {@code LoadGenerator [submit|evaluate|scan] [operations] [concurrency] [maxMessageCount]
+ * [batchTimeoutMillis] [transports]}.
+ * Submits run through {@link SubmitPipeline} with {@code concurrency} transactions in flight and report latency
+ * up to the commit status; evaluates run {@code findAsset} and scans run {@code findAllAsset} over up to
+ * {@value #MAX_EVALUATED_ASSETS} assets on {@code concurrency} threads. A tenth of the operations is run first as
+ * warm-up and not reported.
+ * <p>
+ * {@code transports} is a comma separated list of {@code inprocess}, or a {@link GrpcTransportProfile#named(String)
+ * profile name} for a TCP connection, optionally followed by {@code :channels}, e.g. {@code inprocess,default,tuned,tuned:4}.
+ * Each one is run against a fresh {@link FakeGateway} and reported separately.
+ */
+public final class LoadGenerator {
+    private static final String CHANNEL_NAME = "benchmark";
+    private static final String CHAINCODE_NAME = "basic";
+    private static final String TRANSPORT_IN_PROCESS = "inprocess";
+    private static final int MAX_EVALUATED_ASSETS = 1000;
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "submit";
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int maxMessageCount = args.length > 3 ? Integer.parseInt(args[3]) : 500;
+        long batchTimeoutMillis = args.length > 4 ? Long.parseLong(args[4]) : 20;
+        String transports = args.length > 5 ? args[5] : TRANSPORT_IN_PROCESS;
+
+        for (String transport : transports.split(",")) {
+            run(mode, operations, concurrency, maxMessageCount, batchTimeoutMillis, transport.trim());
+        }
+    }
+
+    private static void run(String mode, int operations, int concurrency, int maxMessageCount, long batchTimeoutMillis,
+                            String transportName) throws Exception {
+        String label = mode + " [" + transportName + "]";
+        try (FakeGateway fabric = new FakeGateway(new AssetContract(), maxMessageCount, batchTimeoutMillis);
+             GrpcTransport transport = newTransport(transportName)) {
+            ManagedChannel channel = transport == null ? fabric.newChannel() : fabric.newChannel(transport);
+            Gateway.Builder builder = Gateway.newInstance()
+                    .identity(newIdentity())
+                    .signer(newSigner())
+                    .hash(Hash.SHA256)
+                    .connection(channel);
+            try (Gateway gateway = builder.connect()) {
+                ContractApi api = new ContractApi(gateway.getNetwork(CHANNEL_NAME).getContract(CHAINCODE_NAME));
+                if ("submit".equals(mode)) {
+                    runSubmits(api, operations / 10, concurrency);
+                    report(label, operations, concurrency, runSubmits(api, operations, concurrency));
+                } else if ("evaluate".equals(mode)) {
+                    List<String> assetIds = createAssets(api, Math.min(operations, MAX_EVALUATED_ASSETS), concurrency);
+                    Callable<?> evaluate = () -> api.findAsset(assetIds.get(ThreadLocalRandom.current().nextInt(assetIds.size())));
+                    runEvaluates(evaluate, operations / 10, concurrency);
+                    report(label, operations, concurrency, runEvaluates(evaluate, operations, concurrency));
+                } else if ("scan".equals(mode)) {
+                    createAssets(api, Math.min(operations, MAX_EVALUATED_ASSETS), concurrency);
+                    runEvaluates(api::findAllAsset, operations / 10, concurrency);
+                    report(label, operations, concurrency, runEvaluates(api::findAllAsset, operations, concurrency));
+                } else {
+                    throw new IllegalArgumentException("Unknown mode: " + mode);
+                }
+            } finally {
+                channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /**
+     * @return {@code null} for an in-process channel.
+     */
+    private static GrpcTransport newTransport(String name) {
+        if (TRANSPORT_IN_PROCESS.equals(name)) {
+            return null;
+        }
+        int separator = name.indexOf(':');
+        GrpcTransportProfile profile = separator < 0 ? GrpcTransportProfile.named(name)
+                : GrpcTransportProfile.named(name.substring(0, separator))
+                .withChannels(Integer.parseInt(name.substring(separator + 1)));
+        return new GrpcTransport(profile);
+    }
+
+    private static final class Run {
+        final long elapsedNanos;
+        final long[] latencyNanos;
+        final int failures;
+
+        Run(long elapsedNanos, long[] latencyNanos, int failures) {
+            this.elapsedNanos = elapsedNanos;
+            this.latencyNanos = latencyNanos;
+            this.failures = failures;
+        }
+    }
+
+    private static Run runSubmits(ContractApi api, int operations, int concurrency) throws InterruptedException {
+        List<CompletableFuture<SubmitPipeline.Result<Asset>>> results = new ArrayList<>(operations);
+        long startNanos = System.nanoTime();
+        try (SubmitPipeline pipeline = new SubmitPipeline(concurrency, 0, 3, api.getExecutor())) {
+            for (int i = 0; i < operations; i++) {
+                String value = "load " + i;
+                results.add(pipeline.submit(() -> api.createAsset(value)));
+            }
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long[] latencyNanos = new long[operations];
+        int completed = 0;
+        int failures = 0;
+        for (CompletableFuture<SubmitPipeline.Result<Asset>> future : results) {
+            try {
+                SubmitPipeline.Result<Asset> result = future.join();
+                if (!result.getStatus().isSuccessful()) {
+                    failures++;
+                }
+                latencyNanos[completed++] = result.getLatencyNanos();
+            } catch (CompletionException e) {
+                failures++;
+            }
+        }
+        return new Run(elapsedNanos, Arrays.copyOf(latencyNanos, completed), failures);
+    }
+
+    private static List<String> createAssets(ContractApi api, int count, int concurrency) throws InterruptedException {
+        List<CompletableFuture<SubmitPipeline.Result<Asset>>> results = new ArrayList<>(count);
+        try (SubmitPipeline pipeline = new SubmitPipeline(concurrency, 0, 3, api.getExecutor())) {
+            for (int i = 0; i < count; i++) {
+                String value = "evaluated " + i;
+                results.add(pipeline.submit(() -> api.createAsset(value)));
+            }
+        }
+        List<String> assetIds = new ArrayList<>(count);
+        for (CompletableFuture<SubmitPipeline.Result<Asset>> future : results) {
+            SubmitPipeline.Result<Asset> result = future.join();
+            if (result.getResponse() != null) {
+                assetIds.add(result.getResponse().getBody().getId());
+            }
+        }
+        return assetIds;
+    }
+
+    private static Run runEvaluates(Callable<?> evaluate, int operations, int concurrency) throws Exception {
+        int perThread = Math.max(1, operations / concurrency);
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>(concurrency);
+            long startNanos = System.nanoTime();
+            for (int t = 0; t < concurrency; t++) {
+                futures.add(workers.submit(() -> {
+                    long[] latencyNanos = new long[perThread];
+                    for (int i = 0; i < perThread; i++) {
+                        long callStartNanos = System.nanoTime();
+                        evaluate.call();
+                        latencyNanos[i] = System.nanoTime() - callStartNanos;
+                    }
+                    return latencyNanos;
+                }));
+            }
+            long[] latencyNanos = new long[perThread * concurrency];
+            int completed = 0;
+            int failures = 0;
+            for (Future<long[]> future : futures) {
+                try {
+                    long[] threadLatencyNanos = future.get();
+                    System.arraycopy(threadLatencyNanos, 0, latencyNanos, completed, threadLatencyNanos.length);
+                    completed += threadLatencyNanos.length;
+                } catch (ExecutionException e) {
+                    failures += perThread;
+                }
+            }
+            long elapsedNanos = System.nanoTime() - startNanos;
+            return new Run(elapsedNanos, Arrays.copyOf(latencyNanos, completed), failures);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private static void report(String mode, int operations, int concurrency, Run run) {
+        long[] latencyNanos = run.latencyNanos;
+        Arrays.sort(latencyNanos);
+        double seconds = run.elapsedNanos / 1e9;
+        System.out.printf("%s: %d operations, concurrency %d, %d failed, %.1f ops/s, p50 %.3f ms, p99 %.3f ms%n",
+                mode, operations, concurrency, run.failures, latencyNanos.length / seconds,
+                percentileMillis(latencyNanos, 0.50), percentileMillis(latencyNanos, 0.99));
+    }
+
+    private static double percentileMillis(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1e6;
+    }
+
+    private static Identity newIdentity() throws Exception {
+        return new X509Identity(InMemoryChaincodeStub.MSP_ID,
+                Identities.readX509Certificate(new StringReader(InMemoryChaincodeStub.CLIENT_CERT)));
+    }
+
+    /**
+     * Signatures are not verified, but signing with a fresh key keeps the client's signing cost in the numbers.
+     */
+    private static Signer newSigner() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        return Signers.newPrivateKeySigner(generator.generateKeyPair().getPrivate());
+    }
+}
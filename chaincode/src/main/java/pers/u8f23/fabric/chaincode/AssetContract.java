@@ -6,13 +6,19 @@ import org.hyperledger.fabric.contract.ContractInterface;
 import org.hyperledger.fabric.contract.annotation.*;
 import org.hyperledger.fabric.shim.ChaincodeException;
 import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
 import org.hyperledger.fabric.shim.ledger.KeyValue;
 import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
 import pers.u8f23.fabric.chaincode.api.*;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 @Contract(
@@ -24,7 +30,41 @@ import java.util.Objects;
 )
 @Default
 public final class AssetContract implements ContractInterface, ContractApi {
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final int ESTIMATED_ASSET_JSON_SIZE = 256;
+    private static final String STATE_CODEC_BINARY = "binary";
+    private static final String OP_CREATE = "CREATE";
+    private static final String OP_UPDATE = "UPDATE";
+    private static final String OP_DELETE = "DELETE";
+    private static final String OP_TRANSFER = "TRANSFER";
+    private static final String OWNER_INDEX = "owner~assetId";
+    // empty values mean deletion, so index entries hold a single zero byte.
+    private static final byte[] INDEX_VALUE = {0};
+
     private final Genson genson = new Genson();
+    private final ChaincodeMetrics metrics = new ChaincodeMetrics(BuildConfig.SLOW_TRANSACTION_MILLIS);
+    private final StateCodec<Asset> assetCodec = new MigratingStateCodec<>(
+            new JsonStateCodec<>(genson, Asset.class, Asset::toJson),
+            Asset.BinaryCodec.INSTANCE,
+            STATE_CODEC_BINARY.equals(BuildConfig.STATE_CODEC)
+    );
+
+    /**
+     * With {@link BuildConfig#METRICS} on, transactions run on a {@link MetricsChaincodeStub}.
+     */
+    @Override
+    public Context createContext(final ChaincodeStub stub) {
+        return new Context(BuildConfig.METRICS ? new MetricsChaincodeStub(stub) : stub);
+    }
+
+    @Override
+    public void afterTransaction(final Context context, final Object result) {
+        ChaincodeStub stub = context.getStub();
+        if (stub instanceof MetricsChaincodeStub) {
+            metrics.record((MetricsChaincodeStub) stub);
+        }
+    }
 
     @Transaction(intent = Transaction.TYPE.SUBMIT)
     @Override
@@ -32,72 +72,226 @@ public final class AssetContract implements ContractInterface, ContractApi {
         ChaincodeStub stub = context.getStub();
         Instant time = stub.getTxTimestamp();
         String clientId = context.getClientIdentity().getId();
-        String assetId = UidUtils.generateUid(time, clientId, value);
-        if (existAsset(stub, assetId)) {
-            String msg = "Conflicted to generate asset unique id. Please retry later.";
-            throw new ChaincodeException(msg, msg);
-        }
         long time64 = time.toEpochMilli();
+        String assetId = UidUtils.generateUid(time64, stub.getTxId(), 0);
         Asset asset = new Asset(assetId, clientId, clientId, time64, -1, -1, value);
-        String sortedJson = genson.serialize(asset);
-        stub.putStringState(assetId, sortedJson);
-        return genson.serialize(new Response<>(asset));
+        stub.putState(assetId, encodeState(stub, asset));
+        stub.putState(ownerIndexKey(stub, clientId, assetId), INDEX_VALUE);
+        emitAssetEvents(stub, List.of(new AssetEvent(assetId, OP_CREATE, clientId, time64)));
+        return RawJsonResponse.ofBody(asset.toJson());
     }
 
     @Transaction(intent = Transaction.TYPE.SUBMIT)
     @Override
     public String updateAsset(final Context context, final String assetId, final String value) {
         ChaincodeStub stub = context.getStub();
-        String assetJson = stub.getStringState(assetId);
-        if (assetJson == null || assetJson.isEmpty()) {
-            return genson.serialize(new Response<>(-1, "ERR_ASSET_NOT_EXIST"));
+        Asset asset = readAsset(stub, assetId);
+        if (asset == null) {
+            return RawJsonResponse.error(-1, "ERR_ASSET_NOT_EXIST");
         }
-        Asset asset = genson.deserialize(assetJson, Asset.class);
         String clientId = context.getClientIdentity().getId();
         if (!Objects.equals(asset.getOwnerId(), clientId)) {
-            return genson.serialize(new Response<>(-1, "ERR_NOT_ASSET_OWNER"));
+            return RawJsonResponse.error(-1, "ERR_NOT_ASSET_OWNER");
         }
-        long time = stub.getTxTimestamp().toEpochMilli();
-        Asset newAsset = new Asset(
-                asset.getId(),
-                asset.getCreatorId(),
-                asset.getOwnerId(),
-                asset.getCreateTime(),
-                asset.getLastTransferTime(),
-                time,
-                value
-        );
-        stub.putStringState(assetId, genson.serialize(newAsset));
-        return genson.serialize(new Response<>());
+        long time = nextUpdateTime(stub.getTxTimestamp().toEpochMilli(), asset);
+        writeValue(stub, updateValue(asset, time, value));
+        emitAssetEvents(stub, List.of(new AssetEvent(assetId, OP_UPDATE, clientId, time)));
+        return RawJsonResponse.success();
     }
 
     @Transaction(intent = Transaction.TYPE.SUBMIT)
     @Override
     public String deleteAsset(final Context context, final String assetId) {
         ChaincodeStub stub = context.getStub();
-        String assetJson = stub.getStringState(assetId);
-        if (assetJson == null || assetJson.isEmpty()) {
-            return genson.serialize(new Response<>(-1, "ERR_ASSET_NOT_EXIST"));
+        Asset asset = readAsset(stub, assetId);
+        if (asset == null) {
+            return RawJsonResponse.error(-1, "ERR_ASSET_NOT_EXIST");
         }
-        Asset asset = genson.deserialize(assetJson, Asset.class);
         String clientId = context.getClientIdentity().getId();
         if (!Objects.equals(asset.getOwnerId(), clientId)) {
-            return genson.serialize(new Response<>(-1, "ERR_NOT_ASSET_OWNER"));
+            return RawJsonResponse.error(-1, "ERR_NOT_ASSET_OWNER");
         }
         stub.delState(assetId);
-        return genson.serialize(new Response<>());
+        stub.delState(ownerIndexKey(stub, asset.getOwnerId(), assetId));
+        if (BuildConfig.DELTA_UPDATES) {
+            AssetDeltas.removeAll(stub, assetId);
+        }
+        long time = stub.getTxTimestamp().toEpochMilli();
+        emitAssetEvents(stub, List.of(new AssetEvent(assetId, OP_DELETE, null, time)));
+        return RawJsonResponse.success();
+    }
+
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    @Override
+    public String createAssets(final Context context, final String values) {
+        String[] valueArray = parseBatch(values, String[].class);
+        if (valueArray == null) {
+            return RawJsonResponse.error(-1, "ERR_INVALID_BATCH");
+        }
+        ChaincodeStub stub = context.getStub();
+        Instant time = stub.getTxTimestamp();
+        String clientId = context.getClientIdentity().getId();
+        long time64 = time.toEpochMilli();
+        List<AssetEvent> events = new ArrayList<>(valueArray.length);
+        RawJsonResponse response = RawJsonResponse.beginArray(ESTIMATED_ASSET_JSON_SIZE * valueArray.length);
+        for (int i = 0; i < valueArray.length; i++) {
+            String value = valueArray[i];
+            if (value == null) {
+                response.append(RawJsonResponse.error(-1, "ERR_INVALID_VALUE"));
+                continue;
+            }
+            // the item index is the same on every endorser, so ids stay deterministic.
+            String assetId = UidUtils.generateUid(time64, stub.getTxId(), i);
+            Asset asset = new Asset(assetId, clientId, clientId, time64, -1, -1, value);
+            stub.putState(assetId, encodeState(stub, asset));
+            stub.putState(ownerIndexKey(stub, clientId, assetId), INDEX_VALUE);
+            events.add(new AssetEvent(assetId, OP_CREATE, clientId, time64));
+            response.append(RawJsonResponse.ofBody(asset.toJson()));
+        }
+        emitAssetEvents(stub, events);
+        return response.finish();
+    }
+
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    @Override
+    public String updateAssets(final Context context, final String updates) {
+        AssetUpdate[] updateArray = parseBatch(updates, AssetUpdate[].class);
+        if (updateArray == null) {
+            return RawJsonResponse.error(-1, "ERR_INVALID_BATCH");
+        }
+        ChaincodeStub stub = context.getStub();
+        String clientId = context.getClientIdentity().getId();
+        long time = stub.getTxTimestamp().toEpochMilli();
+        // state reads do not see own writes, so later updates of one asset start from the pending value.
+        Map<String, Asset> updatedAssets = new LinkedHashMap<>();
+        RawJsonResponse response = RawJsonResponse.beginArray(64 * updateArray.length);
+        for (AssetUpdate update : updateArray) {
+            String assetId = update == null ? null : update.getAssetId();
+            Asset asset = null;
+            if (assetId != null) {
+                asset = updatedAssets.containsKey(assetId) ? updatedAssets.get(assetId) : readAsset(stub, assetId);
+            }
+            if (asset == null) {
+                response.append(RawJsonResponse.error(-1, "ERR_ASSET_NOT_EXIST"));
+                continue;
+            }
+            if (!Objects.equals(asset.getOwnerId(), clientId)) {
+                response.append(RawJsonResponse.error(-1, "ERR_NOT_ASSET_OWNER"));
+                continue;
+            }
+            updatedAssets.put(assetId, updateValue(asset, nextUpdateTime(time, asset), update.getValue()));
+            response.append(RawJsonResponse.success());
+        }
+        List<AssetEvent> events = new ArrayList<>(updatedAssets.size());
+        updatedAssets.forEach((assetId, asset) -> {
+            writeValue(stub, asset);
+            events.add(new AssetEvent(assetId, OP_UPDATE, asset.getOwnerId(), asset.getLastUpdateTime()));
+        });
+        emitAssetEvents(stub, events);
+        return response.finish();
+    }
+
+    /**
+     * Only the asset key is read, the owner index entries are written blindly, so transfers of different assets
+     * never conflict.
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    @Override
+    public String transferAsset(final Context context, final String assetId, final String newOwnerId) {
+        if (newOwnerId == null || newOwnerId.isEmpty()) {
+            return RawJsonResponse.error(-1, "ERR_INVALID_OWNER");
+        }
+        ChaincodeStub stub = context.getStub();
+        Asset asset = readAsset(stub, assetId);
+        if (asset == null) {
+            return RawJsonResponse.error(-1, "ERR_ASSET_NOT_EXIST");
+        }
+        String clientId = context.getClientIdentity().getId();
+        if (!Objects.equals(asset.getOwnerId(), clientId)) {
+            return RawJsonResponse.error(-1, "ERR_NOT_ASSET_OWNER");
+        }
+        long time = stub.getTxTimestamp().toEpochMilli();
+        writeTransfer(stub, asset.getOwnerId(), updateOwner(asset, time, newOwnerId));
+        emitAssetEvents(stub, List.of(new AssetEvent(assetId, OP_TRANSFER, newOwnerId, time)));
+        return RawJsonResponse.success();
+    }
+
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    @Override
+    public String transferAssets(final Context context, final String transfers) {
+        AssetTransfer[] transferArray = parseBatch(transfers, AssetTransfer[].class);
+        if (transferArray == null) {
+            return RawJsonResponse.error(-1, "ERR_INVALID_BATCH");
+        }
+        ChaincodeStub stub = context.getStub();
+        String clientId = context.getClientIdentity().getId();
+        long time = stub.getTxTimestamp().toEpochMilli();
+        // state reads do not see own writes, so later transfers of one asset start from the pending owner.
+        Map<String, Asset> transferredAssets = new LinkedHashMap<>();
+        Map<String, String> originalOwnerIds = new HashMap<>();
+        RawJsonResponse response = RawJsonResponse.beginArray(64 * transferArray.length);
+        for (AssetTransfer transfer : transferArray) {
+            String assetId = transfer == null ? null : transfer.getAssetId();
+            if (transfer != null && (transfer.getNewOwnerId() == null || transfer.getNewOwnerId().isEmpty())) {
+                response.append(RawJsonResponse.error(-1, "ERR_INVALID_OWNER"));
+                continue;
+            }
+            Asset asset = null;
+            if (assetId != null) {
+                asset = transferredAssets.containsKey(assetId) ? transferredAssets.get(assetId) : readAsset(stub, assetId);
+            }
+            if (asset == null) {
+                response.append(RawJsonResponse.error(-1, "ERR_ASSET_NOT_EXIST"));
+                continue;
+            }
+            if (!Objects.equals(asset.getOwnerId(), clientId)) {
+                response.append(RawJsonResponse.error(-1, "ERR_NOT_ASSET_OWNER"));
+                continue;
+            }
+            originalOwnerIds.putIfAbsent(assetId, asset.getOwnerId());
+            transferredAssets.put(assetId, updateOwner(asset, time, transfer.getNewOwnerId()));
+            response.append(RawJsonResponse.success());
+        }
+        List<AssetEvent> events = new ArrayList<>(transferredAssets.size());
+        transferredAssets.forEach((assetId, asset) -> {
+            writeTransfer(stub, originalOwnerIds.get(assetId), asset);
+            events.add(new AssetEvent(assetId, OP_TRANSFER, asset.getOwnerId(), time));
+        });
+        emitAssetEvents(stub, events);
+        return response.finish();
+    }
+
+    /**
+     * Fold value deltas into the asset and delete them. Observable asset state does not change, so any client may
+     * compact; this also drains deltas left behind after delta updates are turned off.
+     * <p>
+     * Compaction rewrites the asset key, which every update of the asset reads, so it fails MVCC validation of all
+     * updates of that asset endorsed before it commits. Compact assets while they are not being updated.
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    @Override
+    public String compactAsset(final Context context, final String assetId) {
+        ChaincodeStub stub = context.getStub();
+        Asset asset = readAsset(stub, assetId);
+        if (asset == null) {
+            return RawJsonResponse.error(-1, "ERR_ASSET_NOT_EXIST");
+        }
+        AssetDeltas.Delta delta = AssetDeltas.removeAll(stub, assetId);
+        if (delta != null && delta.time >= asset.getLastUpdateTime()) {
+            stub.putState(assetId, encodeState(stub, updateValue(asset, delta.time, delta.value)));
+        }
+        return RawJsonResponse.success();
     }
 
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     @Override
     public String findAsset(final Context context, final String assetId) {
         ChaincodeStub stub = context.getStub();
-        String assetJson = stub.getStringState(assetId);
-        if (assetJson == null || assetJson.isEmpty()) {
-            return genson.serialize(new Response<>());
+        byte[] assetBytes = stub.getState(assetId);
+        if (assetBytes == null || assetBytes.length == 0) {
+            return RawJsonResponse.success();
         }
-        Response<Asset> res = new Response<>(genson.deserialize(assetJson, Asset.class));
-        return genson.serialize(res);
+        return RawJsonResponse.ofBody(toAssetJson(stub, assetId, assetBytes));
     }
 
     @Transaction(intent = Transaction.TYPE.EVALUATE)
@@ -105,20 +299,292 @@ public final class AssetContract implements ContractInterface, ContractApi {
     public String findAllAsset(final Context context) {
         ChaincodeStub stub = context.getStub();
         QueryResultsIterator<KeyValue> resultPairs = stub.getStateByRange("", "");
-        List<Asset> assets = new ArrayList<>();
-        for (KeyValue pair : resultPairs) {
+        RawJsonResponse response = RawJsonResponse.beginArray(ESTIMATED_ASSET_JSON_SIZE * 16);
+        try {
+            for (KeyValue pair : resultPairs) {
+                response.append(toAssetJson(stub, pair.getKey(), pair.getValue()));
+            }
+        } finally {
+            closeIterator(resultPairs);
+        }
+        return response.finish();
+    }
+
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    @Override
+    public String findAllAssetByPage(final Context context, final int pageSize, final String bookmark) {
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            return RawJsonResponse.error(-1, "ERR_INVALID_PAGE_SIZE");
+        }
+        ChaincodeStub stub = context.getStub();
+        QueryResultsIteratorWithMetadata<KeyValue> resultPairs = stub.getStateByRangeWithPagination("", "", pageSize, bookmark);
+        try {
+            // metadata comes with the first query response, so the bookmark is known before iterating.
+            String nextBookmark = resultPairs.getMetadata().getBookmark();
+            RawJsonResponse response = RawJsonResponse.beginPage(ESTIMATED_ASSET_JSON_SIZE * pageSize, nextBookmark);
+            for (KeyValue pair : resultPairs) {
+                response.append(toAssetJson(stub, pair.getKey(), pair.getValue()));
+            }
+            return response.finish();
+        } finally {
+            closeIterator(resultPairs);
+        }
+    }
+
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    @Override
+    public String findAssetsByOwner(final Context context, final String ownerId, final int pageSize, final String bookmark) {
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            return RawJsonResponse.error(-1, "ERR_INVALID_PAGE_SIZE");
+        }
+        ChaincodeStub stub = context.getStub();
+        CompositeKey partialKey = stub.createCompositeKey(OWNER_INDEX, ownerId);
+        QueryResultsIteratorWithMetadata<KeyValue> indexPairs = stub.getStateByPartialCompositeKeyWithPagination(partialKey, pageSize, bookmark);
+        try {
+            String nextBookmark = indexPairs.getMetadata().getBookmark();
+            RawJsonResponse response = RawJsonResponse.beginPage(ESTIMATED_ASSET_JSON_SIZE * pageSize, nextBookmark);
+            for (KeyValue indexPair : indexPairs) {
+                String assetId = stub.splitCompositeKey(indexPair.getKey()).getAttributes().get(1);
+                byte[] assetBytes = stub.getState(assetId);
+                if (assetBytes != null && assetBytes.length > 0) {
+                    response.append(toAssetJson(stub, assetId, assetBytes));
+                }
+            }
+            return response.finish();
+        } finally {
+            closeIterator(indexPairs);
+        }
+    }
+
+    /**
+     * Asset ids start with their creation time, so assets created in {@code [fromTime, toTime)} are a single key
+     * range and only that slice is read. Assets are returned in creation order.
+     * <p>
+     * Only assets with time ordered ids are found. Assets created before ids started with their creation time are
+     * never returned, even though their ids may sort into the range; such keys are skipped.
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    @Override
+    public String findAssetsByCreateTime(final Context context, final long fromTime, final long toTime, final int pageSize, final String bookmark) {
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            return RawJsonResponse.error(-1, "ERR_INVALID_PAGE_SIZE");
+        }
+        if (fromTime >= toTime) {
+            return RawJsonResponse.beginPage(0, "").finish();
+        }
+        ChaincodeStub stub = context.getStub();
+        String startKey = UidUtils.uidPrefix(fromTime);
+        String endKey = UidUtils.uidPrefix(toTime);
+        // short pages end client iteration, so pages are topped up with the keys following skipped ones.
+        List<byte[]> records = new ArrayList<>(pageSize);
+        String nextBookmark = bookmark;
+        int requested;
+        int fetched;
+        do {
+            requested = pageSize - records.size();
+            fetched = 0;
+            QueryResultsIteratorWithMetadata<KeyValue> resultPairs = stub.getStateByRangeWithPagination(startKey, endKey, requested, nextBookmark);
+            try {
+                nextBookmark = resultPairs.getMetadata().getBookmark();
+                for (KeyValue pair : resultPairs) {
+                    fetched++;
+                    if (UidUtils.isTimeOrderedUid(pair.getKey())) {
+                        records.add(toAssetJson(stub, pair.getKey(), pair.getValue()));
+                    }
+                }
+            } finally {
+                closeIterator(resultPairs);
+            }
+        } while (records.size() < pageSize && fetched == requested && !nextBookmark.isEmpty());
+        RawJsonResponse response = RawJsonResponse.beginPage(ESTIMATED_ASSET_JSON_SIZE * pageSize, nextBookmark);
+        records.forEach(response::append);
+        return response.finish();
+    }
+
+    /**
+     * Totals of each transaction function on this peer since the chaincode started, empty with
+     * {@link BuildConfig#METRICS} off.
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    @Override
+    public String getMetrics(final Context context) {
+        List<TransactionMetrics> snapshot = metrics.snapshot();
+        RawJsonResponse response = RawJsonResponse.beginArray(256 * snapshot.size());
+        for (TransactionMetrics functionMetrics : snapshot) {
+            response.append(functionMetrics.toJson());
+        }
+        return response.finish();
+    }
+
+    /**
+     * Stored JSON values are canonical asset JSON written by this contract, so they are returned without decoding.
+     * With {@link BuildConfig#VALIDATE_STATE_ON_READ} each value is fully decoded first to reject corrupt entries.
+     * Binary values, and any value while {@link BuildConfig#DELTA_UPDATES} is on, are decoded and encoded as JSON.
+     */
+    private byte[] toAssetJson(final ChaincodeStub stub, final String assetId, final byte[] assetJson) {
+        if (BuildConfig.DELTA_UPDATES || !MigratingStateCodec.isJson(assetJson)) {
+            Asset asset;
             try {
-                assets.add(genson.deserialize(pair.getStringValue(), Asset.class));
-            } catch (Exception e) {
-                String msg = String.format("Failed to decode asset JSON with id \"%s\", JSON:%s", pair.getKey(), pair.getStringValue());
-                throw new ChaincodeException(msg);
+                asset = decodeState(stub, assetJson);
+            } catch (RuntimeException e) {
+                String msg = String.format("Failed to decode asset with id \"%s\"", assetId);
+                throw new ChaincodeException(msg, e);
+            }
+            asset = mergeDeltas(stub, asset);
+            long startNanos = System.nanoTime();
+            byte[] json = asset.toJson().getBytes(StandardCharsets.UTF_8);
+            MetricsChaincodeStub.recordCodec(stub, System.nanoTime() - startNanos);
+            return json;
+        }
+        if (BuildConfig.VALIDATE_STATE_ON_READ) {
+            long startNanos = System.nanoTime();
+            decodeAsset(assetId, new String(assetJson, StandardCharsets.UTF_8));
+            MetricsChaincodeStub.recordCodec(stub, System.nanoTime() - startNanos);
+        }
+        return assetJson;
+    }
+
+    private Asset decodeAsset(final String assetId, final String assetJson) {
+        try {
+            return genson.deserialize(assetJson, Asset.class);
+        } catch (Exception e) {
+            String msg = String.format("Failed to decode asset JSON with id \"%s\", JSON:%s", assetId, assetJson);
+            throw new ChaincodeException(msg);
+        }
+    }
+
+    private static void closeIterator(final AutoCloseable iterator) {
+        try {
+            iterator.close();
+        } catch (Exception e) {
+            throw new ChaincodeException("Failed to close state iterator.", e);
+        }
+    }
+
+    /**
+     * A transaction keeps only its last event, so all changes of one transaction go into a single event.
+     */
+    private static void emitAssetEvents(final ChaincodeStub stub, final List<AssetEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        StringBuilder payload = new StringBuilder(96 * events.size()).append('[');
+        for (int i = 0; i < events.size(); i++) {
+            if (i > 0) {
+                payload.append(',');
             }
+            events.get(i).writeJson(payload);
         }
-        return genson.serialize(new Response<>(assets));
+        payload.append(']');
+        stub.setEvent(ContractEvents.ASSET_CHANGED, payload.toString().getBytes(StandardCharsets.UTF_8));
     }
 
-    private boolean existAsset(final ChaincodeStub stub, final String assetId) {
-        byte[] bytes = stub.getState(assetId);
-        return bytes != null && bytes.length > 0;
+    /**
+     * Write an asset whose value changed, as a delta key while {@link BuildConfig#DELTA_UPDATES} is on.
+     */
+    private void writeValue(final ChaincodeStub stub, final Asset asset) {
+        if (BuildConfig.DELTA_UPDATES) {
+            AssetDeltas.put(stub, asset.getId(), asset.getLastUpdateTime(), asset.getAssetValue());
+        } else {
+            stub.putState(asset.getId(), encodeState(stub, asset));
+        }
+    }
+
+    /**
+     * Apply the latest value delta unless the stored asset was written after it, which only happens for deltas left
+     * behind while delta updates were off. See {@link AssetDeltas} for which delta is the latest.
+     */
+    private static Asset mergeDeltas(final ChaincodeStub stub, final Asset asset) {
+        if (!BuildConfig.DELTA_UPDATES) {
+            return asset;
+        }
+        AssetDeltas.Delta delta = AssetDeltas.latest(stub, asset.getId());
+        if (delta == null || delta.time < asset.getLastUpdateTime()) {
+            return asset;
+        }
+        return updateValue(asset, delta.time, delta.value);
+    }
+
+    /**
+     * Proposal timestamps are set by clients and may go backwards, so updates are dated after the stored asset's last
+     * update. The asset key is in the read set, so an update endorsed before a write of the asset commits fails MVCC
+     * validation instead of being dated before it.
+     */
+    private static long nextUpdateTime(final long txTime, final Asset asset) {
+        return Math.max(txTime, asset.getLastUpdateTime() + 1);
+    }
+
+    private static String ownerIndexKey(final ChaincodeStub stub, final String ownerId, final String assetId) {
+        return stub.createCompositeKey(OWNER_INDEX, ownerId, assetId).toString();
+    }
+
+    private Asset readAsset(final ChaincodeStub stub, final String assetId) {
+        byte[] assetBytes = stub.getState(assetId);
+        if (assetBytes == null || assetBytes.length == 0) {
+            return null;
+        }
+        return decodeState(stub, assetBytes);
+    }
+
+    private byte[] encodeState(final ChaincodeStub stub, final Asset asset) {
+        long startNanos = System.nanoTime();
+        byte[] bytes = assetCodec.encode(asset);
+        MetricsChaincodeStub.recordCodec(stub, System.nanoTime() - startNanos);
+        return bytes;
+    }
+
+    private Asset decodeState(final ChaincodeStub stub, final byte[] bytes) {
+        long startNanos = System.nanoTime();
+        Asset asset = assetCodec.decode(bytes);
+        MetricsChaincodeStub.recordCodec(stub, System.nanoTime() - startNanos);
+        return asset;
+    }
+
+    private void writeTransfer(final ChaincodeStub stub, final String previousOwnerId, final Asset asset) {
+        stub.putState(asset.getId(), encodeState(stub, asset));
+        if (!Objects.equals(previousOwnerId, asset.getOwnerId())) {
+            stub.delState(ownerIndexKey(stub, previousOwnerId, asset.getId()));
+            stub.putState(ownerIndexKey(stub, asset.getOwnerId(), asset.getId()), INDEX_VALUE);
+        }
+    }
+
+    private static Asset updateOwner(final Asset asset, final long time, final String ownerId) {
+        return new Asset(
+                asset.getId(),
+                asset.getCreatorId(),
+                ownerId,
+                asset.getCreateTime(),
+                time,
+                asset.getLastUpdateTime(),
+                asset.getAssetValue()
+        );
+    }
+
+    private static Asset updateValue(final Asset asset, final long time, final String value) {
+        return new Asset(
+                asset.getId(),
+                asset.getCreatorId(),
+                asset.getOwnerId(),
+                asset.getCreateTime(),
+                asset.getLastTransferTime(),
+                time,
+                value
+        );
+    }
+
+    /**
+     * @return items of the JSON array, or {@code null} if malformed, empty or larger than {@link #MAX_BATCH_SIZE}.
+     */
+    private <T> T[] parseBatch(final String json, final Class<T[]> type) {
+        T[] items;
+        try {
+            items = genson.deserialize(json, type);
+        } catch (Exception e) {
+            return null;
+        }
+        if (items == null || items.length == 0 || items.length > MAX_BATCH_SIZE) {
+            return null;
+        }
+        return items;
     }
 }
@@ -0,0 +1,95 @@
+package pers.u8f23.fabric.chaincode;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Asset value updates stored as separate {@code delta~assetId~time~txId} keys instead of rewriting the asset.
+ * <p>
+ * Every update writes its own key, so concurrent updates of one asset only share the asset key in their read sets
+ * and no longer conflict. Keys of one asset sort by update time, then transaction id, and the last one holds
+ * the current value.
+ * <p>
+ * Update times are proposal timestamps raised above the asset's stored last update time, so deltas always sort after
+ * the last compaction or direct write of the asset. Deltas written since then are ordered by update time rather than
+ * commit order: an update whose client clock is behind a delta committed before it still commits successfully, but
+ * the earlier dated value does not become current, and a future dated delta stays current until the asset is
+ * compacted. Updates after a compaction are dated after every compacted delta again.
+ */
+final class AssetDeltas {
+    private static final String DELTA_INDEX = "delta~assetId~time~txId";
+    // empty values mean deletion, so values carry a leading marker byte.
+    private static final byte VALUE_MARKER = 'v';
+    private static final byte NULL_MARKER = 'n';
+
+    private AssetDeltas() {
+    }
+
+    static final class Delta {
+        final long time;
+        final String value;
+
+        private Delta(final long time, final String value) {
+            this.time = time;
+            this.value = value;
+        }
+    }
+
+    static void put(final ChaincodeStub stub, final String assetId, final long time, final String value) {
+        // fixed width hex keeps lexical order equal to numeric order.
+        String key = stub.createCompositeKey(DELTA_INDEX, assetId, String.format("%016x", time), stub.getTxId()).toString();
+        byte[] valueBytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        byte[] stored = new byte[valueBytes.length + 1];
+        stored[0] = value == null ? NULL_MARKER : VALUE_MARKER;
+        System.arraycopy(valueBytes, 0, stored, 1, valueBytes.length);
+        stub.putState(key, stored);
+    }
+
+    /**
+     * @return latest delta of the asset, or {@code null} if none.
+     */
+    static Delta latest(final ChaincodeStub stub, final String assetId) {
+        return scan(stub, assetId, false);
+    }
+
+    /**
+     * Delete all deltas of the asset.
+     *
+     * @return latest deleted delta, or {@code null} if none.
+     */
+    static Delta removeAll(final ChaincodeStub stub, final String assetId) {
+        return scan(stub, assetId, true);
+    }
+
+    private static Delta scan(final ChaincodeStub stub, final String assetId, final boolean remove) {
+        QueryResultsIterator<KeyValue> pairs = stub.getStateByPartialCompositeKey(DELTA_INDEX, assetId);
+        KeyValue last = null;
+        try {
+            for (KeyValue pair : pairs) {
+                last = pair;
+                if (remove) {
+                    stub.delState(pair.getKey());
+                }
+            }
+        } finally {
+            try {
+                pairs.close();
+            } catch (Exception e) {
+                throw new ChaincodeException("Failed to close state iterator.", e);
+            }
+        }
+        if (last == null) {
+            return null;
+        }
+        List<String> attributes = stub.splitCompositeKey(last.getKey()).getAttributes();
+        byte[] stored = last.getValue();
+        String value = stored[0] == NULL_MARKER ? null : new String(Arrays.copyOfRange(stored, 1, stored.length), StandardCharsets.UTF_8);
+        return new Delta(Long.parseUnsignedLong(attributes.get(1), 16), value);
+    }
+}
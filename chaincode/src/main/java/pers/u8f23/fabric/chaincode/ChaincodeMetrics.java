@@ -0,0 +1,103 @@
+package pers.u8f23.fabric.chaincode;
+
+import pers.u8f23.fabric.chaincode.api.TransactionMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Totals of {@link MetricsChaincodeStub} counters by transaction function, since the chaincode process started.
+ * Counters are per peer, and only transactions returning normally are recorded, since the contract is not
+ * called back after a transaction throws.
+ */
+public final class ChaincodeMetrics {
+    private static final Logger LOGGER = Logger.getLogger(ChaincodeMetrics.class.getName());
+
+    private final long slowTransactionNanos;
+    private final Map<String, FunctionTotals> functions = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param slowTransactionMillis log transactions running at least this long, {@code 0} to log none.
+     */
+    public ChaincodeMetrics(final long slowTransactionMillis) {
+        this.slowTransactionNanos = TimeUnit.MILLISECONDS.toNanos(slowTransactionMillis);
+    }
+
+    public void record(final MetricsChaincodeStub stub) {
+        long elapsedNanos = stub.getElapsedNanos();
+        String function = stub.getFunctionName();
+        FunctionTotals totals = functions.get(function);
+        if (totals == null) {
+            totals = functions.computeIfAbsent(function, __ -> new FunctionTotals());
+        }
+        totals.add(stub, elapsedNanos);
+        if (slowTransactionNanos > 0 && elapsedNanos >= slowTransactionNanos) {
+            LOGGER.warning(String.format(
+                    "Slow transaction %s %s: %.1f ms, %d reads, %d writes, %d deletes, %d range queries, "
+                            + "%d range rows, %d bytes read, %d bytes written, %.1f ms codec",
+                    function, stub.getTxId(), elapsedNanos / 1e6, stub.getStateReads(), stub.getStateWrites(),
+                    stub.getStateDeletes(), stub.getRangeQueries(), stub.getRangeRows(), stub.getBytesRead(),
+                    stub.getBytesWritten(), stub.getCodecNanos() / 1e6));
+        }
+    }
+
+    /**
+     * @return totals of each recorded function, ordered by function name.
+     */
+    public List<TransactionMetrics> snapshot() {
+        List<TransactionMetrics> snapshot = new ArrayList<>(functions.size());
+        functions.forEach((function, totals) -> snapshot.add(totals.toMetrics(function)));
+        return snapshot;
+    }
+
+    private static final class FunctionTotals {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+        private final LongAdder stateReads = new LongAdder();
+        private final LongAdder stateWrites = new LongAdder();
+        private final LongAdder stateDeletes = new LongAdder();
+        private final LongAdder rangeQueries = new LongAdder();
+        private final LongAdder rangeRows = new LongAdder();
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder bytesWritten = new LongAdder();
+        private final LongAdder codecNanos = new LongAdder();
+
+        void add(final MetricsChaincodeStub stub, final long elapsedNanos) {
+            count.increment();
+            totalNanos.add(elapsedNanos);
+            maxNanos.accumulate(elapsedNanos);
+            stateReads.add(stub.getStateReads());
+            stateWrites.add(stub.getStateWrites());
+            stateDeletes.add(stub.getStateDeletes());
+            rangeQueries.add(stub.getRangeQueries());
+            rangeRows.add(stub.getRangeRows());
+            bytesRead.add(stub.getBytesRead());
+            bytesWritten.add(stub.getBytesWritten());
+            codecNanos.add(stub.getCodecNanos());
+        }
+
+        TransactionMetrics toMetrics(final String function) {
+            return new TransactionMetrics(
+                    function,
+                    count.sum(),
+                    totalNanos.sum(),
+                    maxNanos.get(),
+                    stateReads.sum(),
+                    stateWrites.sum(),
+                    stateDeletes.sum(),
+                    rangeQueries.sum(),
+                    rangeRows.sum(),
+                    bytesRead.sum(),
+                    bytesWritten.sum(),
+                    codecNanos.sum()
+            );
+        }
+    }
+}
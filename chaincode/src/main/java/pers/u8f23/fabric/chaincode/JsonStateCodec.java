@@ -0,0 +1,33 @@
+package pers.u8f23.fabric.chaincode;
+
+import com.owlike.genson.Genson;
+import pers.u8f23.fabric.chaincode.api.StateCodec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+/**
+ * Stores pojo as JSON, the original world state format.
+ * Encodes with the generated {@code toJson} of the pojo, decodes with Genson.
+ */
+public final class JsonStateCodec<T> implements StateCodec<T> {
+    private final Genson genson;
+    private final Class<T> type;
+    private final Function<T, String> encoder;
+
+    public JsonStateCodec(final Genson genson, final Class<T> type, final Function<T, String> encoder) {
+        this.genson = genson;
+        this.type = type;
+        this.encoder = encoder;
+    }
+
+    @Override
+    public byte[] encode(final T value) {
+        return encoder.apply(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public T decode(final byte[] bytes) {
+        return genson.deserialize(new String(bytes, StandardCharsets.UTF_8), type);
+    }
+}
@@ -0,0 +1,373 @@
+package pers.u8f23.fabric.chaincode;
+
+import org.hyperledger.fabric.protos.peer.ChaincodeEvent;
+import org.hyperledger.fabric.protos.peer.QueryResponseMetadata;
+import org.hyperledger.fabric.protos.peer.SignedProposal;
+import org.hyperledger.fabric.shim.Chaincode;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts world state calls and bytes of one transaction, and the time since it started.
+ * A stub serves a single transaction on a single thread, so counters are plain fields.
+ * Private data and key history calls are passed through without counting.
+ */
+public final class MetricsChaincodeStub implements ChaincodeStub {
+    private final ChaincodeStub delegate;
+    private final long startNanos = System.nanoTime();
+    private long stateReads;
+    private long stateWrites;
+    private long stateDeletes;
+    private long rangeQueries;
+    private long rangeRows;
+    private long bytesRead;
+    private long bytesWritten;
+    private long codecNanos;
+
+    public MetricsChaincodeStub(final ChaincodeStub delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Count time spent encoding or decoding state values to the transaction, if {@code stub} is instrumented.
+     */
+    public static void recordCodec(final ChaincodeStub stub, final long nanos) {
+        if (stub instanceof MetricsChaincodeStub) {
+            ((MetricsChaincodeStub) stub).codecNanos += nanos;
+        }
+    }
+
+    /**
+     * @return transaction function name without the contract name prefix.
+     */
+    String getFunctionName() {
+        String function = delegate.getFunction();
+        return function == null ? "" : function.substring(function.indexOf(':') + 1);
+    }
+
+    long getElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    long getStateReads() {
+        return stateReads;
+    }
+
+    long getStateWrites() {
+        return stateWrites;
+    }
+
+    long getStateDeletes() {
+        return stateDeletes;
+    }
+
+    long getRangeQueries() {
+        return rangeQueries;
+    }
+
+    long getRangeRows() {
+        return rangeRows;
+    }
+
+    long getBytesRead() {
+        return bytesRead;
+    }
+
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    long getCodecNanos() {
+        return codecNanos;
+    }
+
+    @Override
+    public byte[] getState(final String key) {
+        byte[] value = delegate.getState(key);
+        stateReads++;
+        bytesRead += value == null ? 0 : value.length;
+        return value;
+    }
+
+    @Override
+    public void putState(final String key, final byte[] value) {
+        delegate.putState(key, value);
+        stateWrites++;
+        bytesWritten += value == null ? 0 : value.length;
+    }
+
+    @Override
+    public void delState(final String key) {
+        delegate.delState(key);
+        stateDeletes++;
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByRange(final String startKey, final String endKey) {
+        rangeQueries++;
+        return new CountingIterator(delegate.getStateByRange(startKey, endKey));
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByRangeWithPagination(final String startKey, final String endKey, final int pageSize, final String bookmark) {
+        rangeQueries++;
+        return new CountingIteratorWithMetadata(delegate.getStateByRangeWithPagination(startKey, endKey, pageSize, bookmark));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String compositeKey) {
+        rangeQueries++;
+        return new CountingIterator(delegate.getStateByPartialCompositeKey(compositeKey));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String objectType, final String... attributes) {
+        rangeQueries++;
+        return new CountingIterator(delegate.getStateByPartialCompositeKey(objectType, attributes));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final CompositeKey compositeKey) {
+        rangeQueries++;
+        return new CountingIterator(delegate.getStateByPartialCompositeKey(compositeKey));
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByPartialCompositeKeyWithPagination(final CompositeKey compositeKey, final int pageSize, final String bookmark) {
+        rangeQueries++;
+        return new CountingIteratorWithMetadata(delegate.getStateByPartialCompositeKeyWithPagination(compositeKey, pageSize, bookmark));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getQueryResult(final String query) {
+        rangeQueries++;
+        return new CountingIterator(delegate.getQueryResult(query));
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getQueryResultWithPagination(final String query, final int pageSize, final String bookmark) {
+        rangeQueries++;
+        return new CountingIteratorWithMetadata(delegate.getQueryResultWithPagination(query, pageSize, bookmark));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyModification> getHistoryForKey(final String key) {
+        return delegate.getHistoryForKey(key);
+    }
+
+    @Override
+    public List<byte[]> getArgs() {
+        return delegate.getArgs();
+    }
+
+    @Override
+    public List<String> getStringArgs() {
+        return delegate.getStringArgs();
+    }
+
+    @Override
+    public String getFunction() {
+        return delegate.getFunction();
+    }
+
+    @Override
+    public List<String> getParameters() {
+        return delegate.getParameters();
+    }
+
+    @Override
+    public String getTxId() {
+        return delegate.getTxId();
+    }
+
+    @Override
+    public String getChannelId() {
+        return delegate.getChannelId();
+    }
+
+    @Override
+    public Chaincode.Response invokeChaincode(final String chaincodeName, final List<byte[]> args, final String channel) {
+        return delegate.invokeChaincode(chaincodeName, args, channel);
+    }
+
+    @Override
+    public byte[] getStateValidationParameter(final String key) {
+        return delegate.getStateValidationParameter(key);
+    }
+
+    @Override
+    public void setStateValidationParameter(final String key, final byte[] value) {
+        delegate.setStateValidationParameter(key, value);
+    }
+
+    @Override
+    public CompositeKey createCompositeKey(final String objectType, final String... attributes) {
+        return delegate.createCompositeKey(objectType, attributes);
+    }
+
+    @Override
+    public CompositeKey splitCompositeKey(final String compositeKey) {
+        return delegate.splitCompositeKey(compositeKey);
+    }
+
+    @Override
+    public byte[] getPrivateData(final String collection, final String key) {
+        return delegate.getPrivateData(collection, key);
+    }
+
+    @Override
+    public byte[] getPrivateDataHash(final String collection, final String key) {
+        return delegate.getPrivateDataHash(collection, key);
+    }
+
+    @Override
+    public byte[] getPrivateDataValidationParameter(final String collection, final String key) {
+        return delegate.getPrivateDataValidationParameter(collection, key);
+    }
+
+    @Override
+    public void putPrivateData(final String collection, final String key, final byte[] value) {
+        delegate.putPrivateData(collection, key, value);
+    }
+
+    @Override
+    public void setPrivateDataValidationParameter(final String collection, final String key, final byte[] value) {
+        delegate.setPrivateDataValidationParameter(collection, key, value);
+    }
+
+    @Override
+    public void delPrivateData(final String collection, final String key) {
+        delegate.delPrivateData(collection, key);
+    }
+
+    @Override
+    public void purgePrivateData(final String collection, final String key) {
+        delegate.purgePrivateData(collection, key);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByRange(final String collection, final String startKey, final String endKey) {
+        return delegate.getPrivateDataByRange(collection, startKey, endKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection, final String compositeKey) {
+        return delegate.getPrivateDataByPartialCompositeKey(collection, compositeKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection, final CompositeKey compositeKey) {
+        return delegate.getPrivateDataByPartialCompositeKey(collection, compositeKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection, final String objectType, final String... attributes) {
+        return delegate.getPrivateDataByPartialCompositeKey(collection, objectType, attributes);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataQueryResult(final String collection, final String query) {
+        return delegate.getPrivateDataQueryResult(collection, query);
+    }
+
+    @Override
+    public void setEvent(final String name, final byte[] payload) {
+        delegate.setEvent(name, payload);
+    }
+
+    @Override
+    public ChaincodeEvent getEvent() {
+        return delegate.getEvent();
+    }
+
+    @Override
+    public SignedProposal getSignedProposal() {
+        return delegate.getSignedProposal();
+    }
+
+    @Override
+    public Instant getTxTimestamp() {
+        return delegate.getTxTimestamp();
+    }
+
+    @Override
+    public byte[] getCreator() {
+        return delegate.getCreator();
+    }
+
+    @Override
+    public Map<String, byte[]> getTransient() {
+        return delegate.getTransient();
+    }
+
+    @Override
+    public byte[] getBinding() {
+        return delegate.getBinding();
+    }
+
+    @Override
+    public String getMspId() {
+        return delegate.getMspId();
+    }
+
+    private void countRow(final KeyValue row) {
+        rangeRows++;
+        byte[] value = row.getValue();
+        // keys are mostly ASCII, so their length approximates their size without encoding them.
+        bytesRead += row.getKey().length() + (value == null ? 0 : value.length);
+    }
+
+    private class CountingIterator implements QueryResultsIterator<KeyValue> {
+        private final QueryResultsIterator<KeyValue> iterator;
+
+        CountingIterator(final QueryResultsIterator<KeyValue> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public Iterator<KeyValue> iterator() {
+            Iterator<KeyValue> rows = iterator.iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return rows.hasNext();
+                }
+
+                @Override
+                public KeyValue next() {
+                    KeyValue row = rows.next();
+                    countRow(row);
+                    return row;
+                }
+            };
+        }
+
+        @Override
+        public void close() throws Exception {
+            iterator.close();
+        }
+    }
+
+    private final class CountingIteratorWithMetadata extends CountingIterator implements QueryResultsIteratorWithMetadata<KeyValue> {
+        private final QueryResultsIteratorWithMetadata<KeyValue> iterator;
+
+        CountingIteratorWithMetadata(final QueryResultsIteratorWithMetadata<KeyValue> iterator) {
+            super(iterator);
+            this.iterator = iterator;
+        }
+
+        @Override
+        public QueryResponseMetadata getMetadata() {
+            return iterator.getMetadata();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package pers.u8f23.fabric.chaincode;
+
+import pers.u8f23.fabric.chaincode.api.StateCodec;
+
+/**
+ * Reads both JSON and binary state values and writes the preferred one,
+ * so existing values migrate to the preferred format on their next write.
+ * JSON values always begin with {@code '{'}, which never collides with a binary codec version byte.
+ */
+public final class MigratingStateCodec<T> implements StateCodec<T> {
+    private final StateCodec<T> jsonCodec;
+    private final StateCodec<T> binaryCodec;
+    private final boolean writeBinary;
+
+    public MigratingStateCodec(final StateCodec<T> jsonCodec, final StateCodec<T> binaryCodec, final boolean writeBinary) {
+        this.jsonCodec = jsonCodec;
+        this.binaryCodec = binaryCodec;
+        this.writeBinary = writeBinary;
+    }
+
+    public static boolean isJson(final byte[] bytes) {
+        return bytes.length > 0 && bytes[0] == '{';
+    }
+
+    @Override
+    public byte[] encode(final T value) {
+        return writeBinary ? binaryCodec.encode(value) : jsonCodec.encode(value);
+    }
+
+    @Override
+    public T decode(final byte[] bytes) {
+        return isJson(bytes) ? jsonCodec.decode(bytes) : binaryCodec.decode(bytes);
+    }
+}
@@ -0,0 +1,112 @@
+package pers.u8f23.fabric.chaincode;
+
+import pers.u8f23.fabric.chaincode.api.JsonEncoder;
+import pers.u8f23.fabric.chaincode.api.Response;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes {@link Response} JSON directly, splicing already encoded bodies into the envelope,
+ * so values stored as canonical JSON are not decoded and encoded again.
+ * Field order follows Genson's alphabetical order, matching {@code genson.serialize(new Response<>(body))}.
+ */
+public final class RawJsonResponse {
+    private static final byte[] BODY_PREFIX = "{\"body\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SUCCESS_SUFFIX = ",\"code\":0,\"msg\":\"Success\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PAGE_BOOKMARK_PREFIX = "{\"bookmark\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PAGE_RECORDS_PREFIX = ",\"records\":[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ARRAY_SUFFIX = "]".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PAGE_SUFFIX = "]}".getBytes(StandardCharsets.UTF_8);
+    private static final String SUCCESS = "{\"body\":null,\"code\":0,\"msg\":\"Success\"}";
+
+    private final ByteArrayOutputStream out;
+    private final byte[] bodySuffix;
+    private boolean empty = true;
+
+    private RawJsonResponse(int capacity, byte[] bodySuffix) {
+        this.out = new ByteArrayOutputStream(capacity);
+        this.bodySuffix = bodySuffix;
+        this.out.writeBytes(BODY_PREFIX);
+    }
+
+    /**
+     * @return same as {@code genson.serialize(new Response<>())}.
+     */
+    public static String success() {
+        return SUCCESS;
+    }
+
+    /**
+     * @return same as {@code genson.serialize(new Response<>(code, msg))}.
+     */
+    public static String error(int code, String msg) {
+        StringBuilder out = new StringBuilder(48 + msg.length());
+        out.append("{\"body\":null,\"code\":").append(code).append(",\"msg\":");
+        JsonEncoder.writeString(out, msg);
+        return out.append('}').toString();
+    }
+
+    /**
+     * @param body JSON value of {@code Response.body}.
+     */
+    public static String ofBody(String body) {
+        return "{\"body\":" + body + ",\"code\":0,\"msg\":\"Success\"}";
+    }
+
+    /**
+     * @param body JSON value of {@code Response.body}.
+     */
+    public static String ofBody(byte[] body) {
+        RawJsonResponse response = new RawJsonResponse(BODY_PREFIX.length + body.length + SUCCESS_SUFFIX.length, new byte[0]);
+        response.out.writeBytes(body);
+        return response.finish();
+    }
+
+    /**
+     * Begin a response whose body is a JSON array of appended elements.
+     */
+    public static RawJsonResponse beginArray(int capacity) {
+        RawJsonResponse response = new RawJsonResponse(capacity, ARRAY_SUFFIX);
+        response.out.write('[');
+        return response;
+    }
+
+    /**
+     * Begin a response whose body is a {@code Page} with appended elements as records.
+     */
+    public static RawJsonResponse beginPage(int capacity, String bookmark) {
+        RawJsonResponse response = new RawJsonResponse(capacity, PAGE_SUFFIX);
+        StringBuilder bookmarkJson = new StringBuilder();
+        JsonEncoder.writeString(bookmarkJson, bookmark);
+        response.out.writeBytes(PAGE_BOOKMARK_PREFIX);
+        response.out.writeBytes(bookmarkJson.toString().getBytes(StandardCharsets.UTF_8));
+        response.out.writeBytes(PAGE_RECORDS_PREFIX);
+        return response;
+    }
+
+    /**
+     * @param element JSON value of one array element.
+     */
+    public RawJsonResponse append(byte[] element) {
+        if (!empty) {
+            out.write(',');
+        }
+        out.writeBytes(element);
+        empty = false;
+        return this;
+    }
+
+    /**
+     * @param element JSON value of one array element.
+     */
+    public RawJsonResponse append(String element) {
+        return append(element.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String finish() {
+        out.writeBytes(bodySuffix);
+        out.writeBytes(SUCCESS_SUFFIX);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -1,37 +1,111 @@
 package pers.u8f23.fabric.chaincode;
 
-import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
-import java.time.Instant;
-import java.util.Base64;
-
+/**
+ * Asset ids are 40 bytes: the 48-bit transaction timestamp in epoch millis, the 32-byte transaction id and a
+ * 16-bit sequence number of the asset within that transaction, encoded as 54 chars of unpadded Base64.
+ * <p>
+ * Transaction ids are unique on a channel and every endorser sees the same id and sequence, so ids are
+ * deterministic and never collide without reading the state.
+ * <p>
+ * Bytes are big-endian and the Base64 alphabet is the URL-safe one in ASCII order, so ids sort by creation time
+ * both as strings and as state keys. The timestamp is exactly the first 8 chars, see {@link #uidPrefix(long)}.
+ */
 public final class UidUtils {
+    private static final int TIME_BYTES = 6;
+    private static final int TX_ID_BYTES = 32;
+    private static final int UID_BYTES = TIME_BYTES + TX_ID_BYTES + Short.BYTES;
+    private static final int UID_CHARS = (UID_BYTES * 8 + 5) / 6;
+    private static final long MAX_TIME = (1L << TIME_BYTES * 8) - 1;
+    private static final int MAX_SEQUENCE = 0xFFFF;
+    private static final char[] SORTABLE_BASE64_ALPHABET =
+            "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
     private UidUtils() {
     }
 
-    public static String generateUid(Instant instant, String clientId, String assetValue) {
-        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + Integer.BYTES + Short.BYTES * 2);
-        buffer.putLong(instant.getEpochSecond());
-        buffer.putInt(instant.getNano());
-        buffer.putShort(crc16(clientId));
-        buffer.putShort(crc16(assetValue));
-        return Base64.getEncoder().encodeToString(buffer.array());
-    }
-
-    private static short crc16(String str) {
-        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
-        int crc = 0xFFFF;
-        for (byte b : bytes) {
-            crc = (crc & 0xFF00) | (crc & 0x00FF) ^ (b & 0xFF);
-            for (int j = 0; j < 8; j++) {
-                if ((crc & 0x0001) > 0) {
-                    crc = crc >> 1;
-                    crc = crc ^ 0xA001;
-                } else {
-                    crc = crc >> 1;
-                }
-            }
-        }
-        return (short) crc;
+    private static final class Buffers {
+        final byte[] bytes = new byte[UID_BYTES];
+        final char[] chars = new char[UID_CHARS];
+    }
+
+    /**
+     * @param createTime transaction timestamp in epoch millis.
+     * @param txId       hex encoded SHA-256 transaction id, as returned by {@code ChaincodeStub#getTxId()}.
+     * @param sequence   index of the created asset within the transaction, from 0 to 65535.
+     */
+    public static String generateUid(long createTime, String txId, int sequence) {
+        if (txId == null || txId.length() != TX_ID_BYTES * 2) {
+            throw new IllegalArgumentException("Transaction id must be " + TX_ID_BYTES * 2 + " hex chars: " + txId);
+        }
+        if (sequence < 0 || sequence > MAX_SEQUENCE) {
+            throw new IllegalArgumentException("Sequence out of range: " + sequence);
+        }
+        Buffers buffers = BUFFERS.get();
+        byte[] bytes = buffers.bytes;
+        writeTime(bytes, createTime);
+        for (int i = 0; i < TX_ID_BYTES; i++) {
+            bytes[TIME_BYTES + i] = (byte) (hexDigit(txId, i * 2) << 4 | hexDigit(txId, i * 2 + 1));
+        }
+        bytes[UID_BYTES - 2] = (byte) (sequence >>> 8);
+        bytes[UID_BYTES - 1] = (byte) sequence;
+        return encode(bytes, UID_BYTES, buffers.chars);
+    }
+
+    /**
+     * The 8 leading chars of ids created at {@code createTime}. Ids created in {@code [from, to)} are exactly the
+     * keys in {@code [uidPrefix(from), uidPrefix(to))}.
+     *
+     * @param createTime epoch millis, clamped to the range ids can hold.
+     */
+    public static String uidPrefix(long createTime) {
+        Buffers buffers = BUFFERS.get();
+        writeTime(buffers.bytes, Math.max(0, Math.min(createTime, MAX_TIME)));
+        return encode(buffers.bytes, TIME_BYTES, buffers.chars);
+    }
+
+    /**
+     * Whether {@code key} has the length of ids generated here. Ids of earlier formats, 22, 24 or 46 chars long,
+     * do not start with their creation time but may still sort into a {@link #uidPrefix(long)} range.
+     */
+    public static boolean isTimeOrderedUid(String key) {
+        return key.length() == UID_CHARS;
+    }
+
+    private static void writeTime(byte[] bytes, long time) {
+        if (time < 0 || time > MAX_TIME) {
+            throw new IllegalArgumentException("Time out of range: " + time);
+        }
+        for (int i = TIME_BYTES - 1; i >= 0; i--) {
+            bytes[i] = (byte) time;
+            time >>>= 8;
+        }
+    }
+
+    private static int hexDigit(String txId, int index) {
+        int digit = Character.digit(txId.charAt(index), 16);
+        if (digit < 0) {
+            throw new IllegalArgumentException("Transaction id must be hex encoded: " + txId);
+        }
+        return digit;
+    }
+
+    private static String encode(byte[] bytes, int length, char[] chars) {
+        int charIndex = 0;
+        int i = 0;
+        for (; i + 3 <= length; i += 3) {
+            int bits = (bytes[i] & 0xFF) << 16 | (bytes[i + 1] & 0xFF) << 8 | (bytes[i + 2] & 0xFF);
+            chars[charIndex++] = SORTABLE_BASE64_ALPHABET[bits >>> 18];
+            chars[charIndex++] = SORTABLE_BASE64_ALPHABET[(bits >>> 12) & 0x3F];
+            chars[charIndex++] = SORTABLE_BASE64_ALPHABET[(bits >>> 6) & 0x3F];
+            chars[charIndex++] = SORTABLE_BASE64_ALPHABET[bits & 0x3F];
+        }
+        // ids leave one trailing byte, written as two chars without padding; prefixes leave none.
+        if (i < length) {
+            int bits = (bytes[i] & 0xFF) << 4;
+            chars[charIndex++] = SORTABLE_BASE64_ALPHABET[bits >>> 6];
+            chars[charIndex++] = SORTABLE_BASE64_ALPHABET[bits & 0x3F];
+        }
+        return new String(chars, 0, charIndex);
     }
 }
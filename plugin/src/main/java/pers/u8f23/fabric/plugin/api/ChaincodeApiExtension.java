@@ -3,7 +3,7 @@ package pers.u8f23.fabric.plugin.api;
 import org.gradle.api.Action;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.provider.Property;
-import org.gradle.api.tasks.*;
+import org.gradle.api.tasks.Nested;
 import pers.u8f23.fabric.plugin.api.config.ClassesDefinition;
 
 /**
@@ -17,7 +17,6 @@ public interface ChaincodeApiExtension {
      * path where to generate API Java codes.
      * Default in {@code ./build } directory.
      */
-    @OutputDirectory
     DirectoryProperty getSourceOutputPath();
 
     /**
@@ -37,13 +36,11 @@ public interface ChaincodeApiExtension {
     /**
      * Java package name of generated classes.
      */
-    @Input
     Property<String> getSourcePackageName();
 
     /**
      * Which type to generate codes.
      * Valued at {@link #API_TYPE_CHAINCODE} or {@link #API_TYPE_APPLICATION} .
      */
-    @Input
     Property<String> getGenerateType();
 }
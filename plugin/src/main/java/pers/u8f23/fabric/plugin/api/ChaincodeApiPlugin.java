@@ -1,10 +1,10 @@
 package pers.u8f23.fabric.plugin.api;
 
 import org.gradle.api.*;
-import org.gradle.api.file.Directory;
-import org.gradle.api.file.SourceDirectorySet;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.tasks.SourceSet;
 import org.gradle.api.tasks.SourceSetContainer;
-import org.gradle.api.tasks.compile.JavaCompile;
+import org.gradle.api.tasks.TaskProvider;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -25,6 +25,9 @@ import org.jetbrains.annotations.NotNull;
  *             "field_name_2" : "int",
  *         ])
  *
+ *         // define chaincode events and the type of their JSON payload.
+ *         registerEvent("EventName", "java.util.List<pojo_class_name>")
+ *
  *         // define api classes.
  *         registerApi("api_class_name", ApiDefinition.API_TYPE_SUBMIT) {
  *             registerMethod("method_name_1", "String", [
@@ -34,6 +37,20 @@ import org.jetbrains.annotations.NotNull;
  *                 "parameter_name_1" : "String",
  *                 "parameter_name_2" : "int"
  *             ])
+ *             // list parameters are passed to chaincode as a JSON array string.
+ *             registerMethod("method_name_4", "Void", [
+ *                 "parameter_name_1" : "java.util.List<String>"
+ *             ])
+ *         }
+ *         registerApi("api_class_name_2", ApiDefinition.API_TYPE_EVALUATE) {
+ *             // appends `int pageSize` and `String bookmark` parameters.
+ *             registerPagedMethod("method_name_3", "pojo_class_name", [
+ *                 "parameter_name_1" : "String"
+ *             ])
+ *             // application side results are cached, keyed by the state key in `parameter_name_1`.
+ *             registerCachedMethod("method_name_5", "pojo_class_name", [
+ *                 "parameter_name_1" : "String"
+ *             ], "parameter_name_1")
  *         }
  *     }
  *     sourcePackageName = "${project.ext.cons.group}.chaincode.api"
@@ -44,49 +61,42 @@ import org.jetbrains.annotations.NotNull;
 public class ChaincodeApiPlugin implements Plugin<Project> {
     public static final String PLUGIN_ALIAS = "generateApi";
 
+    /**
+     * Everything is wired through providers, so applying the plugin neither reads the extension, touches files nor
+     * realizes tasks; the generate task is only configured when a build or IDE sync needs it.
+     */
     @Override
     public void apply(@NotNull Project project) {
         ChaincodeApiExtension extension = project.getExtensions().create(PLUGIN_ALIAS, ChaincodeApiExtension.class);
 
         extension.getSourceOutputPath().convention(project.getLayout().getBuildDirectory().dir("generated/sources/chaincode-api/main"));
-        extension.getSourcePackageName().convention(project.getGroup().toString());
-
-        Iterable<JavaCompile> compileTasks = project.getTasks()
-                .withType(JavaCompile.class);
+        // the group is usually assigned after plugins are applied.
+        extension.getSourcePackageName().convention(project.provider(() -> project.getGroup().toString()));
 
-        Directory sourceOutputPath = extension.getSourceOutputPath().get();
-        @SuppressWarnings("all")
-        boolean __ignored = sourceOutputPath.getAsFile().mkdirs();
-
-        project.getTasks().register(PLUGIN_ALIAS, GenerateApiTask.class, new Action<GenerateApiTask>() {
+        TaskProvider<GenerateApiTask> generateTask = project.getTasks().register(PLUGIN_ALIAS, GenerateApiTask.class, new Action<GenerateApiTask>() {
             @Override
             public void execute(@NotNull GenerateApiTask generateTask) {
-
-                // make sure directory exists.
-                generateTask.getSourceOutputPath().set(sourceOutputPath);
+                generateTask.getSourceOutputPath().set(extension.getSourceOutputPath());
                 generateTask.getClasses().set(extension.getClasses());
-                generateTask.getSourcePackageName().set(extension.getSourcePackageName().get());
-                generateTask.getGenerateType().set(extension.getGenerateType().get());
-
-                // add source to compiler.
-                compileTasks.forEach(javaCompile -> {
-                    javaCompile.source(sourceOutputPath.getAsFile());
-                });
+                generateTask.getSourcePackageName().set(extension.getSourcePackageName());
+                generateTask.getGenerateType().set(extension.getGenerateType());
             }
         });
 
-        // register source set so IDEA can scan and index generated codes.
-        project.getExtensions()
-                .findByType(SourceSetContainer.class)
-                .findByName("main")
-                .java(new Action<SourceDirectorySet>() {
-                    @Override
-                    public void execute(SourceDirectorySet files) {
-                        files.srcDirs(sourceOutputPath.getAsFile());
-                    }
-                });
-
-        // generate codes before compile.
-        compileTasks.forEach(javaCompile -> javaCompile.dependsOn(PLUGIN_ALIAS));
+        // register generated codes as main sources, so IDEA indexes them and every task consuming main sources
+        // depends on the generate task through the provider.
+        project.getPlugins().withType(JavaPlugin.class, new Action<JavaPlugin>() {
+            @Override
+            public void execute(@NotNull JavaPlugin javaPlugin) {
+                project.getExtensions()
+                        .getByType(SourceSetContainer.class)
+                        .named(SourceSet.MAIN_SOURCE_SET_NAME, new Action<SourceSet>() {
+                            @Override
+                            public void execute(@NotNull SourceSet sourceSet) {
+                                sourceSet.getJava().srcDir(generateTask.flatMap(GenerateApiTask::getSourceOutputPath));
+                            }
+                        });
+            }
+        });
     }
 }
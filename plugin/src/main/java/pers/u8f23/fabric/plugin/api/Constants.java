@@ -5,5 +5,12 @@ public class Constants {
     }
 
     public static final String RESPONSE_BODY_CLASS_NAME = "Response";
+    public static final String PAGE_BODY_CLASS_NAME = "Page";
+    public static final String STATE_CODEC_CLASS_NAME = "StateCodec";
+    public static final String JSON_ENCODER_CLASS_NAME = "JsonEncoder";
+    public static final String JSON_DECODER_CLASS_NAME = "JsonDecoder";
+    public static final String EVENTS_CLASS_NAME = "ContractEvents";
 
+    public static final String PAGE_SIZE_PARAM_NAME = "pageSize";
+    public static final String BOOKMARK_PARAM_NAME = "bookmark";
 }
@@ -10,16 +10,20 @@ import pers.u8f23.fabric.plugin.api.generators.ApplicationApiGenerator;
 import pers.u8f23.fabric.plugin.api.generators.ChaincodeApiGenerator;
 
 import java.io.File;
-import java.util.Objects;
 
 /**
  * Task to generate api codes.
+ * <p>
+ * Inputs are the nested DSL values, so the task is up-to-date and its output can be loaded from the build cache
+ * until the definitions change. Generation rewrites only changed files, keeping unchanged sources out of the
+ * incremental compilation of the consuming project.
  */
+@CacheableTask
 public abstract class GenerateApiTask extends DefaultTask {
     @OutputDirectory
     public abstract DirectoryProperty getSourceOutputPath();
 
-    @Input
+    @Nested
     public abstract Property<ClassesDefinition> getClasses();
 
     @Input
@@ -35,21 +39,19 @@ public abstract class GenerateApiTask extends DefaultTask {
         File outputPath = getSourceOutputPath().getAsFile().get();
         ClassesDefinition classes = getClasses().get();
 
-        // TODO refactor plugin to make it incremental so that the plugin will not need to clean before each build.
-        deleteRecursive(outputPath);
-
         AbstractApiGenerator generator;
         switch (generateType) {
             case ChaincodeApiExtension.API_TYPE_CHAINCODE:
-                generator = new ChaincodeApiGenerator();
+                generator = new ChaincodeApiGenerator(classes.getBinaryCodec().getOrElse(false));
                 break;
             case ChaincodeApiExtension.API_TYPE_APPLICATION:
-                generator = new ApplicationApiGenerator();
+                generator = new ApplicationApiGenerator(classes.getMetrics().getOrElse(false));
                 break;
             default:
                 throw new RuntimeException(String.format("unexpected generate type in {%s}, val: %s", getGenerateType(), generateType));
         }
-        generator.generate(classes, outputPath, packageName);
+        int writtenCount = generator.generate(classes, outputPath, packageName);
+        getLogger().info("{} generated source files changed in {}", writtenCount, outputPath);
     }
 
 //    private void printInput(){
@@ -74,16 +76,4 @@ public abstract class GenerateApiTask extends DefaultTask {
 //            });
 //        });
 //    }
-
-
-    private void deleteRecursive(File root) {
-        if (root.isDirectory()) {
-            for (File child : Objects.requireNonNullElse(root.listFiles(), new File[]{})) {
-                deleteRecursive(child);
-            }
-        }
-        if (root.exists()) {
-            root.delete();
-        }
-    }
 }
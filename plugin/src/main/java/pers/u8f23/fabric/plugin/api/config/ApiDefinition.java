@@ -3,9 +3,13 @@ package pers.u8f23.fabric.plugin.api.config;
 import org.gradle.api.NamedDomainObjectContainer;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Nested;
 
 import java.util.Map;
 
+import static pers.u8f23.fabric.plugin.api.Constants.BOOKMARK_PARAM_NAME;
+import static pers.u8f23.fabric.plugin.api.Constants.PAGE_SIZE_PARAM_NAME;
+
 public interface ApiDefinition {
     String API_TYPE_SUBMIT = "submit";
     String API_TYPE_EVALUATE = "evaluate";
@@ -16,7 +20,7 @@ public interface ApiDefinition {
     @Input
     Property<String> getType();
 
-    @Input
+    @Nested
     NamedDomainObjectContainer<ApiMethodDefinition> getMethods();
 
     default void registerMethod(String name, Map<String, String> parameters) {
@@ -27,5 +31,32 @@ public interface ApiDefinition {
         ApiMethodDefinition def = getMethods().create(name);
         def.getReturnType().set(returnType);
         def.getParameters().putAll(parameters);
+        def.getPaged().set(false);
+    }
+
+    /**
+     * Register a method returning one page of {@code recordType} records.
+     * {@code pageSize} and {@code bookmark} parameters are appended after {@code parameters}.
+     */
+    default void registerPagedMethod(String name, String recordType, Map<String, String> parameters) {
+        ApiMethodDefinition def = getMethods().create(name);
+        def.getReturnType().set(recordType);
+        def.getParameters().putAll(parameters);
+        def.getParameters().put(PAGE_SIZE_PARAM_NAME, "int");
+        def.getParameters().put(BOOKMARK_PARAM_NAME, "String");
+        def.getPaged().set(true);
+    }
+
+    /**
+     * Register a method whose results may be cached on the client side.
+     * {@code cacheKey} names the parameter holding the state key read by the method, so the cached result can be
+     * dropped when a committed transaction writes that key.
+     */
+    default void registerCachedMethod(String name, String returnType, Map<String, String> parameters, String cacheKey) {
+        if (!parameters.containsKey(cacheKey)) {
+            throw new IllegalArgumentException(String.format("Cache key \"%s\" is not a parameter of method \"%s\".", cacheKey, name));
+        }
+        registerMethod(name, returnType, parameters);
+        getMethods().getByName(name).getCacheKey().set(cacheKey);
     }
 }
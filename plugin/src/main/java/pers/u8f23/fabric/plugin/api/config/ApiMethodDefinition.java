@@ -3,6 +3,7 @@ package pers.u8f23.fabric.plugin.api.config;
 import org.gradle.api.provider.MapProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Optional;
 
 public interface ApiMethodDefinition {
     @Input
@@ -13,4 +14,18 @@ public interface ApiMethodDefinition {
 
     @Input
     MapProperty<String, String> getParameters();
+
+    /**
+     * Whether this method returns a page of {@link #getReturnType()} records.
+     * Paged methods take extra {@code pageSize} and {@code bookmark} parameters.
+     */
+    @Input
+    Property<Boolean> getPaged();
+
+    /**
+     * Name of the parameter holding the state key read by this method. Only set for cached methods.
+     */
+    @Input
+    @Optional
+    Property<String> getCacheKey();
 }
@@ -2,14 +2,17 @@ package pers.u8f23.fabric.plugin.api.config;
 
 import org.gradle.api.Action;
 import org.gradle.api.NamedDomainObjectContainer;
+import org.gradle.api.provider.MapProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Nested;
+import org.gradle.api.tasks.Optional;
 
 import java.util.Map;
 
 public interface ClassesDefinition {
 
-    @Input
+    @Nested
     NamedDomainObjectContainer<PojoDefinition> getPojos();
 
     default void pojos(Action<? super NamedDomainObjectContainer<PojoDefinition>> action) {
@@ -24,7 +27,23 @@ public interface ClassesDefinition {
     @Input
     Property<String> getComplexApiClassName();
 
+    /**
+     * Whether to generate a compact binary state codec for each pojo class.
+     * Only affects chaincode codes.
+     */
+    @Input
+    @Optional
+    Property<Boolean> getBinaryCodec();
+
+    /**
+     * Whether to instrument api methods with latency, error and in-flight metrics.
+     * Only affects application codes.
+     */
     @Input
+    @Optional
+    Property<Boolean> getMetrics();
+
+    @Nested
     NamedDomainObjectContainer<ApiDefinition> getApis();
 
     default void apis(Action<? super NamedDomainObjectContainer<ApiDefinition>> action) {
@@ -36,4 +55,14 @@ public interface ClassesDefinition {
         def.getType().set(type);
         action.execute(def);
     }
+
+    /**
+     * Chaincode event names mapped to the type of their JSON payload.
+     */
+    @Input
+    MapProperty<String, String> getEvents();
+
+    default void registerEvent(String name, String payloadType) {
+        getEvents().put(name, payloadType);
+    }
 }
@@ -1,37 +1,78 @@
 package pers.u8f23.fabric.plugin.api.generators;
 
 import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 import pers.u8f23.fabric.plugin.api.config.ApiDefinition;
+import pers.u8f23.fabric.plugin.api.config.ApiMethodDefinition;
 import pers.u8f23.fabric.plugin.api.config.ClassesDefinition;
 import pers.u8f23.fabric.plugin.api.config.PojoDefinition;
 
+import javax.lang.model.element.Modifier;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static pers.u8f23.fabric.plugin.api.Constants.EVENTS_CLASS_NAME;
+import static pers.u8f23.fabric.plugin.api.Constants.PAGE_BODY_CLASS_NAME;
 
 public abstract class AbstractApiGenerator {
+    private static final Pattern CAMEL_CASE_BOUNDARY = Pattern.compile("(?<=[a-z0-9])(?=[A-Z])");
+
     private final Map<String, ClassName> classNames = new HashMap<>();
 
-    public final void generate(ClassesDefinition classes, File outputDirectory, String packageName) {
+    /**
+     * Write generated classes to {@code outputDirectory}. Files are only rewritten when their content changed, and
+     * files of classes no longer generated are deleted, so unchanged sources keep their timestamps.
+     *
+     * @return number of files written.
+     */
+    public final int generate(ClassesDefinition classes, File outputDirectory, String packageName) {
+        // specs share declared class names, and other classes are built after pojos and apis, so build in order.
+        List<TypeSpec> typeSpecs = new ArrayList<>();
         classes.getPojos()
                 .stream()
                 .map(this::buildPojoClass)
                 .filter(Objects::nonNull)
-                .forEach(typeSpec -> this.writeSpec(typeSpec, outputDirectory, packageName));
+                .forEach(typeSpecs::add);
         classes.getApis()
                 .stream()
                 .map(this::buildApiClass)
                 .filter(Objects::nonNull)
-                .forEach(typeSpec -> this.writeSpec(typeSpec, outputDirectory, packageName));
+                .forEach(typeSpecs::add);
         buildOtherClasses(classes, packageName)
                 .stream()
                 .filter(Objects::nonNull)
-                .forEach(typeSpec -> this.writeSpec(typeSpec, outputDirectory, packageName));
+                .forEach(typeSpecs::add);
+
+        Path outputPath = outputDirectory.toPath();
+        Path packagePath = outputPath.resolve(packageName.replace('.', File.separatorChar));
+        Map<Path, TypeSpec> files = new LinkedHashMap<>();
+        typeSpecs.forEach(typeSpec -> files.put(packagePath.resolve(typeSpec.name + ".java"), typeSpec));
+        // rendering is independent per file, and most of the work for large definitions.
+        long writtenCount = files.entrySet()
+                .parallelStream()
+                .filter(entry -> this.writeSpec(entry.getValue(), packageName, entry.getKey()))
+                .count();
+        deleteStaleFiles(outputPath, files.keySet());
+        return (int) writtenCount;
     }
 
     public abstract TypeSpec buildPojoClass(PojoDefinition def);
@@ -43,14 +84,53 @@ public abstract class AbstractApiGenerator {
      */
     public abstract List<TypeSpec> buildOtherClasses(ClassesDefinition classes, String packageName);
 
-    private void writeSpec(TypeSpec typeSpec, File outputDirectory, String packageName) {
+    /**
+     * @return whether the file was written.
+     */
+    private boolean writeSpec(TypeSpec typeSpec, String packageName, Path file) {
+        byte[] content = JavaFile.builder(packageName, typeSpec).build().toString().getBytes(StandardCharsets.UTF_8);
         try {
-            JavaFile.builder(packageName, typeSpec).build().writeTo(outputDirectory);
+            if (Files.isRegularFile(file) && Files.size(file) == content.length
+                    && Arrays.equals(Files.readAllBytes(file), content)) {
+                return false;
+            }
+            Files.createDirectories(file.getParent());
+            Files.write(file, content);
+            return true;
         } catch (IOException e) {
             throw new RuntimeException("Failed to write generated code.", e);
         }
     }
 
+    /**
+     * Delete files in {@code outputPath} other than {@code generatedFiles}, and directories left empty.
+     */
+    private void deleteStaleFiles(Path outputPath, Set<Path> generatedFiles) {
+        if (!Files.isDirectory(outputPath)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(outputPath)) {
+            // children are deleted before their directories.
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                if (Files.isDirectory(path)) {
+                    if (!path.equals(outputPath) && isEmptyDirectory(path)) {
+                        Files.delete(path);
+                    }
+                } else if (!generatedFiles.contains(path)) {
+                    Files.delete(path);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete stale generated code.", e);
+        }
+    }
+
+    private static boolean isEmptyDirectory(Path directory) throws IOException {
+        try (Stream<Path> children = Files.list(directory)) {
+            return children.findAny().isEmpty();
+        }
+    }
+
     protected final ClassName declareCustomClass(String classNameStr) {
         return classNames.computeIfAbsent(classNameStr, s -> ClassName.get("", s));
     }
@@ -59,6 +139,56 @@ public abstract class AbstractApiGenerator {
         return classNames.computeIfAbsent(classNameStr, s -> ClassName.get(packageName, s));
     }
 
+    protected final boolean isStringType(String typeStr) {
+        return "String".equals(typeStr) || "java.lang.String".equals(typeStr);
+    }
+
+    /**
+     * List typed parameters are passed to chaincode as a JSON array string.
+     */
+    protected final boolean isListType(String typeStr) {
+        return typeStr.startsWith("java.util.List<") || typeStr.startsWith("List<");
+    }
+
+    protected final boolean isPagedMethod(ApiMethodDefinition def) {
+        return def.getPaged().getOrElse(false);
+    }
+
+    protected final boolean isCachedMethod(ApiMethodDefinition def) {
+        return def.getCacheKey().isPresent();
+    }
+
+    /**
+     * Type of {@code Response.body} returned by the method, wrapped in a page for paged methods.
+     */
+    protected final TypeName resolveBodyType(ApiMethodDefinition def) {
+        ClassName returnType = declareCustomClass(def.getReturnType().get());
+        if (!isPagedMethod(def)) {
+            return returnType;
+        }
+        return ParameterizedTypeName.get(declareCustomClass(PAGE_BODY_CLASS_NAME), returnType);
+    }
+
+    /**
+     * Name constants of the registered chaincode events, shared by chaincode and application codes.
+     */
+    protected final TypeSpec generateEventNamesClass(ClassesDefinition classes) {
+        TypeSpec.Builder typeBuilder = TypeSpec.classBuilder(EVENTS_CLASS_NAME)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build());
+        classes.getEvents().get().forEach((eventName, payloadType) -> typeBuilder.addField(FieldSpec
+                .builder(String.class, castNameToConstant(eventName), Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .addJavadoc("Payload: JSON of {@code $L}.\n", payloadType)
+                .initializer("$S", eventName)
+                .build()
+        ));
+        return typeBuilder.build();
+    }
+
+    protected final String castNameToConstant(String name) {
+        return CAMEL_CASE_BOUNDARY.matcher(name).replaceAll("_").toUpperCase();
+    }
+
     protected final String castFieldToGetter(String fieldName) {
         if (fieldName.isEmpty()) {
             return fieldName;
@@ -7,19 +7,35 @@ import pers.u8f23.fabric.plugin.api.config.ClassesDefinition;
 import pers.u8f23.fabric.plugin.api.config.PojoDefinition;
 
 import javax.lang.model.element.Modifier;
-import java.io.ByteArrayInputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.Function;
 
-import static pers.u8f23.fabric.plugin.api.Constants.RESPONSE_BODY_CLASS_NAME;
+import static pers.u8f23.fabric.plugin.api.Constants.*;
 
 public final class ApplicationApiGenerator extends AbstractApiGenerator {
     private static final String INJECT_CLASS_NAME = "ContractApiInjectable";
     private static final String INJECTED_CONTRACT_METHOD_NAME = "getContract";
     private static final String INJECTED_GSON_METHOD_NAME = "getGson";
+    private static final String INJECTED_EXECUTOR_METHOD_NAME = "getExecutor";
+    private static final String ASYNC_METHOD_SUFFIX = "Async";
     private static final String PROPOSED_SUBMIT_RES_CLASS_NAME = "ProposedSubmit";
+    private static final String PAGE_ITERATOR_CLASS_NAME = "PageIterator";
+    private static final String PAGE_FETCHER_CLASS_NAME = "PageFetcher";
+    private static final String EVALUATE_CACHE_CLASS_NAME = "EvaluateCache";
+    private static final String CACHE_LOADER_CLASS_NAME = "Loader";
+    private static final String CACHED_API_CLASS_PREFIX = "Cached";
+    private static final String EVENT_LISTENER_CLASS_NAME = "ContractEventListener";
+    private static final String EVENT_HANDLER_CLASS_NAME = "Handler";
+    private static final String METRICS_CLASS_NAME = "ContractMetrics";
+    private static final String RESPONSE_TYPE_CONSTANT_SUFFIX = "_RESPONSE_TYPE";
+    private static final String INJECTED_METRICS_METHOD_NAME = "getContractMetrics";
+    private static final List<String> METRICS_PHASES = List.of("EVALUATE", "ENDORSE", "SUBMIT", "COMMIT", "DECODE");
 
     private static final ClassName LOMBOK_GETTER_ANNOTATION = ClassName.get("lombok", "Getter");
     private static final ClassName LOMBOK_SETTER_ANNOTATION = ClassName.get("lombok", "Setter");
@@ -29,15 +45,62 @@ public final class ApplicationApiGenerator extends AbstractApiGenerator {
     private static final ClassName LOMBOK_REQ_ARGUS_CONS_ANNOTATION = ClassName.get("lombok", "RequiredArgsConstructor");
     private static final ClassName LOMBOK_TO_STRING_ANNOTATION = ClassName.get("lombok", "ToString");
     private static final ClassName GSON_CLASS = ClassName.get("com.google.gson", "Gson");
+    private static final ClassName GSON_BUILDER_CLASS = ClassName.get("com.google.gson", "GsonBuilder");
     private static final ClassName GSON_SERIALIZED_NAME_ANNOTATION = ClassName.get("com.google.gson.annotations", "SerializedName");
     private static final ClassName GSON_TYPE_TOKEN_CLASS = ClassName.get("com.google.gson.reflect", "TypeToken");
+    private static final ClassName GSON_JSON_ADAPTER_ANNOTATION = ClassName.get("com.google.gson.annotations", "JsonAdapter");
+    private static final ClassName GSON_TYPE_ADAPTER_CLASS = ClassName.get("com.google.gson", "TypeAdapter");
+    private static final ClassName GSON_JSON_READER_CLASS = ClassName.get("com.google.gson.stream", "JsonReader");
+    private static final ClassName GSON_JSON_WRITER_CLASS = ClassName.get("com.google.gson.stream", "JsonWriter");
+    private static final ClassName GSON_JSON_TOKEN_CLASS = ClassName.get("com.google.gson.stream", "JsonToken");
+    private static final ClassName GSON_MALFORMED_JSON_EXCEPTION_CLASS = ClassName.get("com.google.gson.stream", "MalformedJsonException");
+    private static final ClassName GSON_JSON_SYNTAX_EXCEPTION_CLASS = ClassName.get("com.google.gson", "JsonSyntaxException");
+    private static final ClassName GSON_JSON_IO_EXCEPTION_CLASS = ClassName.get("com.google.gson", "JsonIOException");
+    private static final String GSON_TYPE_ADAPTER_CLASS_NAME = "GsonTypeAdapter";
+
+    /**
+     * How generated type adapters read each supported field type, in {@code JsonReader} expressions.
+     */
+    private static final Map<String, String> GSON_FIELD_READERS = Map.of(
+            "long", "in.nextLong()",
+            "int", "in.nextInt()",
+            "short", "(short) in.nextInt()",
+            "byte", "(byte) in.nextInt()",
+            "double", "in.nextDouble()",
+            "float", "(float) in.nextDouble()",
+            "boolean", "in.nextBoolean()",
+            "char", "in.nextString().charAt(0)"
+    );
     private static final ClassName API_CONTRACT_INJECT_CLASS = ClassName.get("", INJECT_CLASS_NAME);
     private static final ClassName PROPOSED_SUBMIT_RES_CLASS = ClassName.get("", PROPOSED_SUBMIT_RES_CLASS_NAME);
+    private static final ClassName PAGE_ITERATOR_CLASS = ClassName.get("", PAGE_ITERATOR_CLASS_NAME);
+    private static final ClassName EVALUATE_CACHE_CLASS = ClassName.get("", EVALUATE_CACHE_CLASS_NAME);
+    private static final ClassName METRICS_CLASS = ClassName.get("", METRICS_CLASS_NAME);
+    private static final ClassName JSON_DECODER_CLASS = ClassName.get("", JSON_DECODER_CLASS_NAME);
 
     private static final ClassName API_CONTRACT_CLASS = ClassName.get("org.hyperledger.fabric.client", "Contract");
+    private static final ClassName TRANSACTION_CLASS = ClassName.get("org.hyperledger.fabric.client", "Transaction");
     private static final ClassName SUBMITTED_TRANSACTION_CLASS = ClassName.get("org.hyperledger.fabric.client", "SubmittedTransaction");
     private static final ClassName SUBMIT_STATUS_CLASS = ClassName.get("org.hyperledger.fabric.client", "Status");
+    private static final ClassName NETWORK_CLASS = ClassName.get("org.hyperledger.fabric.client", "Network");
+    private static final ClassName CHAINCODE_EVENT_CLASS = ClassName.get("org.hyperledger.fabric.client", "ChaincodeEvent");
+    private static final ClassName CLOSEABLE_ITERATOR_CLASS = ClassName.get("org.hyperledger.fabric.client", "CloseableIterator");
     private static final ClassName SUBMIT_STATUS_EXCEPTION_CLASS = ClassName.get("org.hyperledger.fabric.client", "CommitStatusException");
+    private static final ClassName GATEWAY_EXCEPTION_CLASS = ClassName.get("org.hyperledger.fabric.client", "GatewayException");
+    private static final ClassName COMPLETABLE_FUTURE_CLASS = ClassName.get(CompletableFuture.class);
+
+    private final boolean metrics;
+
+    public ApplicationApiGenerator() {
+        this(false);
+    }
+
+    /**
+     * @param metrics whether to instrument api methods with a {@code ContractMetrics} injected into the api.
+     */
+    public ApplicationApiGenerator(boolean metrics) {
+        this.metrics = metrics;
+    }
 
     @Override
     public TypeSpec buildPojoClass(PojoDefinition def) {
@@ -50,28 +113,132 @@ public final class ApplicationApiGenerator extends AbstractApiGenerator {
                 .addAnnotation(LOMBOK_TO_STRING_ANNOTATION)
                 .addModifiers(Modifier.PUBLIC, Modifier.FINAL);
         def.getFields().get().forEach((fieldName, typeStr) -> decoratePojoWithField(fieldName, declareCustomClass(typeStr), typeBuilder));
+        decoratePojoWithTypeAdapter(def, typeBuilder);
         return typeBuilder.build();
     }
 
+    /**
+     * Add a nested Gson {@code TypeAdapter} reading and writing fields directly, bound by {@code @JsonAdapter}
+     * so every {@code Gson} instance picks it up without reflective field binding.
+     * Skipped if any field type is neither a primitive nor a string.
+     */
+    private void decoratePojoWithTypeAdapter(PojoDefinition def, TypeSpec.Builder typeBuilder) {
+        if (!hasTypeAdapter(def)) {
+            return;
+        }
+        Map<String, String> fields = def.getFields().get();
+        ClassName pojoClass = declareCustomClass(def.getName());
+        ClassName adapterClass = ClassName.get("", GSON_TYPE_ADAPTER_CLASS_NAME);
+        MethodSpec.Builder writeBuilder = MethodSpec.methodBuilder("write")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(GSON_JSON_WRITER_CLASS, "out")
+                .addParameter(pojoClass, "value")
+                .addException(IOException.class)
+                .beginControlFlow("if (value == null)")
+                .addStatement("out.nullValue()")
+                .addStatement("return")
+                .endControlFlow()
+                .addStatement("out.beginObject()");
+        MethodSpec.Builder readBuilder = MethodSpec.methodBuilder("read")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(GSON_JSON_READER_CLASS, "in")
+                .returns(pojoClass)
+                .addException(IOException.class)
+                .beginControlFlow("if (in.peek() == $T.NULL)", GSON_JSON_TOKEN_CLASS)
+                .addStatement("in.nextNull()")
+                .addStatement("return null")
+                .endControlFlow()
+                .addStatement("$T value = new $T()", pojoClass, pojoClass)
+                .addStatement("in.beginObject()")
+                .beginControlFlow("while (in.hasNext())")
+                .beginControlFlow("switch (in.nextName())");
+        fields.forEach((fieldName, fieldType) -> {
+            if ("char".equals(fieldType)) {
+                writeBuilder.addStatement("out.name($S).value(String.valueOf(value.$L))", fieldName, fieldName);
+            } else {
+                writeBuilder.addStatement("out.name($S).value(value.$L)", fieldName, fieldName);
+            }
+            String reader = isStringType(fieldType) ? "readNullableString(in)" : GSON_FIELD_READERS.get(fieldType);
+            readBuilder.addStatement("case $S: value.$L = $L; break", fieldName, fieldName, reader);
+        });
+        writeBuilder.addStatement("out.endObject()");
+        readBuilder.addStatement("default: in.skipValue()")
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("in.endObject()")
+                .addStatement("return value");
+        typeBuilder.addAnnotation(AnnotationSpec
+                .builder(GSON_JSON_ADAPTER_ANNOTATION)
+                .addMember("value", "$T.class", ClassName.get("", def.getName(), GSON_TYPE_ADAPTER_CLASS_NAME))
+                .build()
+        );
+        typeBuilder.addType(TypeSpec.classBuilder(adapterClass)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .superclass(ParameterizedTypeName.get(GSON_TYPE_ADAPTER_CLASS, pojoClass))
+                .addMethod(writeBuilder.build())
+                .addMethod(readBuilder.build())
+                .addMethod(MethodSpec
+                        .methodBuilder("readNullableString")
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                        .addParameter(GSON_JSON_READER_CLASS, "in")
+                        .returns(String.class)
+                        .addException(IOException.class)
+                        .beginControlFlow("if (in.peek() == $T.NULL)", GSON_JSON_TOKEN_CLASS)
+                        .addStatement("in.nextNull()")
+                        .addStatement("return null")
+                        .endControlFlow()
+                        .addStatement("return in.nextString()")
+                        .build()
+                )
+                .build()
+        );
+    }
+
+    private boolean hasTypeAdapter(PojoDefinition def) {
+        return def.getFields().get()
+                .values()
+                .stream()
+                .allMatch(fieldType -> isStringType(fieldType) || GSON_FIELD_READERS.containsKey(fieldType));
+    }
+
     @Override
     public TypeSpec buildApiClass(ApiDefinition def) {
         TypeSpec.Builder typeBuilder = TypeSpec.interfaceBuilder(def.getName());
         typeBuilder.addModifiers(Modifier.PUBLIC)
                 .addSuperinterface(API_CONTRACT_INJECT_CLASS);
-        Function<ApiMethodDefinition, MethodSpec> methodBuildMethod;
+        Function<ApiMethodDefinition, List<MethodSpec>> methodBuildMethod;
         switch (def.getType().get()) {
             case ApiDefinition.API_TYPE_SUBMIT:
-                methodBuildMethod = this::buildApiMethodSubmit;
+                methodBuildMethod = methodDef -> {
+                    MethodSpec method = buildApiMethodSubmit(methodDef);
+                    return List.of(method, buildApiMethodAsync(methodDef, method));
+                };
                 break;
             case ApiDefinition.API_TYPE_EVALUATE:
-                methodBuildMethod = this::buildApiMethodEvaluate;
+                methodBuildMethod = methodDef -> {
+                    MethodSpec method = buildApiMethodEvaluate(methodDef);
+                    return isPagedMethod(methodDef)
+                            ? List.of(method, buildApiMethodAsync(methodDef, method), buildApiMethodPageIterator(methodDef))
+                            : List.of(method, buildApiMethodAsync(methodDef, method));
+                };
                 break;
             default:
-                methodBuildMethod = __any -> null;
+                methodBuildMethod = __any -> List.of();
+        }
+        if (ApiDefinition.API_TYPE_SUBMIT.equals(def.getType().get()) || ApiDefinition.API_TYPE_EVALUATE.equals(def.getType().get())) {
+            def.getMethods().forEach(methodDef -> typeBuilder.addField(FieldSpec
+                    .builder(Type.class, responseTypeConstant(methodDef), Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                    .addJavadoc("Response type of {@link #$L}, resolved once instead of on every call.\n", methodDef.getName())
+                    .initializer("new $T<$T>() {\n}.getType()", GSON_TYPE_TOKEN_CLASS, resolveResponseType(methodDef))
+                    .build()
+            ));
         }
         def.getMethods()
                 .stream()
                 .map(methodBuildMethod)
+                .flatMap(List::stream)
                 .filter(Objects::nonNull)
                 .forEach(typeBuilder::addMethod);
         return typeBuilder.build();
@@ -79,16 +246,434 @@ public final class ApplicationApiGenerator extends AbstractApiGenerator {
 
     @Override
     public List<TypeSpec> buildOtherClasses(ClassesDefinition classes, String packageName) {
-        return List.of(
+        List<TypeSpec> types = new ArrayList<>(List.of(
                 generateContextInjectInterface(),
                 generateProposedSubmitResClass(),
                 generateComplexInterfaceImpl(classes),
-                generateResponseBodyClass()
+                generateResponseBodyClass(),
+                generatePageBodyClass(),
+                generatePageIteratorClass(),
+                generateJsonDecoderClass(),
+                generateEvaluateCacheClass(),
+                generateEventNamesClass(classes),
+                generateEventListenerClass(classes)
+        ));
+        if (metrics) {
+            types.add(generateMetricsInterface());
+        }
+        classes.getApis()
+                .stream()
+                .filter(def -> ApiDefinition.API_TYPE_EVALUATE.equals(def.getType().get()))
+                .filter(def -> def.getMethods().stream().anyMatch(this::isCachedMethod))
+                .map(this::generateCachedApiClass)
+                .forEach(types::add);
+        return types;
+    }
+
+    /**
+     * Evaluate api implementation answering cached methods from an {@code EvaluateCache}, and every other method
+     * from the injected contract.
+     */
+    private TypeSpec generateCachedApiClass(ApiDefinition def) {
+        ClassName apiClass = ClassName.get("", def.getName());
+        TypeSpec.Builder typeBuilder = TypeSpec.classBuilder(CACHED_API_CLASS_PREFIX + def.getName())
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addSuperinterface(apiClass)
+                .addJavadoc("Cached responses are shared between callers and must not be modified.\n")
+                .addField(API_CONTRACT_INJECT_CLASS, "delegate", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(EVALUATE_CACHE_CLASS, "cache", Modifier.PRIVATE, Modifier.FINAL);
+        typeBuilder.addMethod(MethodSpec
+                .constructorBuilder()
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(API_CONTRACT_INJECT_CLASS, "delegate")
+                .addParameter(EVALUATE_CACHE_CLASS, "cache")
+                .addStatement("this.delegate = delegate")
+                .addStatement("this.cache = cache")
+                .build()
+        );
+        Map<String, TypeName> injected = new LinkedHashMap<>();
+        injected.put(INJECTED_CONTRACT_METHOD_NAME, API_CONTRACT_CLASS);
+        injected.put(INJECTED_GSON_METHOD_NAME, GSON_CLASS);
+        injected.put(INJECTED_EXECUTOR_METHOD_NAME, ClassName.get(Executor.class));
+        if (metrics) {
+            injected.put(INJECTED_METRICS_METHOD_NAME, METRICS_CLASS);
+        }
+        injected.forEach((methodName, returnType) -> typeBuilder.addMethod(MethodSpec
+                .methodBuilder(methodName)
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .returns(returnType)
+                .addStatement("return this.delegate.$L()", methodName)
+                .build()
+        ));
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("getCache")
+                .addModifiers(Modifier.PUBLIC)
+                .returns(EVALUATE_CACHE_CLASS)
+                .addStatement("return this.cache")
+                .build()
         );
+        def.getMethods()
+                .stream()
+                .filter(this::isCachedMethod)
+                .forEach(methodDef -> {
+                    MethodSpec uncached = buildApiMethodEvaluate(methodDef);
+                    String actualParamsStr = String.join(", ", methodDef.getParameters().get().keySet());
+                    String cacheKey = methodDef.getCacheKey().get();
+                    String stateKeyStr = isStringType(methodDef.getParameters().get().get(cacheKey))
+                            ? cacheKey
+                            : String.format("String.valueOf(%s)", cacheKey);
+                    typeBuilder.addMethod(MethodSpec
+                            .methodBuilder(methodDef.getName())
+                            .addModifiers(Modifier.PUBLIC)
+                            .addAnnotation(Override.class)
+                            .returns(uncached.returnType)
+                            .addParameters(uncached.parameters)
+                            .addExceptions(uncached.exceptions)
+                            .addStatement("$T<$T> key = $T.asList($S, $L)", List.class, Object.class, Arrays.class, methodDef.getName(), actualParamsStr)
+                            .addStatement("return this.cache.get(key, $L, () -> $T.super.$L($L))",
+                                    stateKeyStr, apiClass, methodDef.getName(), actualParamsStr)
+                            .build()
+                    );
+                });
+        return typeBuilder.build();
+    }
+
+    /**
+     * Typed listener of registered chaincode events on one shared event stream.
+     * The stream resumes from the block after the last received event, since the gateway delivers all events of a
+     * block together.
+     */
+    private TypeSpec generateEventListenerClass(ClassesDefinition classes) {
+        TypeVariableName genericClass = TypeVariableName.get("T");
+        ClassName listenerClass = ClassName.get("", EVENT_LISTENER_CLASS_NAME);
+        ClassName handlerClass = ClassName.get("", EVENT_HANDLER_CLASS_NAME);
+        ClassName eventsClass = ClassName.get("", EVENTS_CLASS_NAME);
+        TypeName eventIteratorType = ParameterizedTypeName.get(CLOSEABLE_ITERATOR_CLASS, CHAINCODE_EVENT_CLASS);
+        TypeName errorHandlerType = ParameterizedTypeName.get(ClassName.get(java.util.function.Consumer.class), ClassName.get(Exception.class));
+        TypeSpec handlerInterface = TypeSpec.interfaceBuilder(EVENT_HANDLER_CLASS_NAME)
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(FunctionalInterface.class)
+                .addTypeVariable(genericClass)
+                .addMethod(MethodSpec
+                        .methodBuilder("handle")
+                        .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
+                        .addParameter(CHAINCODE_EVENT_CLASS, "event")
+                        .addParameter(genericClass, "payload")
+                        .build()
+                )
+                .build();
+        TypeSpec.Builder typeBuilder = TypeSpec.classBuilder(EVENT_LISTENER_CLASS_NAME)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addSuperinterface(AutoCloseable.class)
+                .addType(handlerInterface)
+                .addField(NETWORK_CLASS, "network", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(String.class, "chaincodeName", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(GSON_CLASS, "gson", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(FieldSpec
+                        .builder(ParameterizedTypeName.get(ClassName.get(Map.class), ClassName.get(String.class),
+                                ParameterizedTypeName.get(ClassName.get(java.util.function.Consumer.class), CHAINCODE_EVENT_CLASS)), "handlers", Modifier.PRIVATE, Modifier.FINAL)
+                        .initializer("new $T<>()", ConcurrentHashMap.class)
+                        .build()
+                )
+                .addField(FieldSpec
+                        .builder(errorHandlerType, "errorHandler", Modifier.PRIVATE, Modifier.VOLATILE)
+                        .initializer("e -> {}")
+                        .build()
+                )
+                .addField(Thread.class, "thread", Modifier.PRIVATE)
+                .addField(eventIteratorType, "events", Modifier.PRIVATE, Modifier.VOLATILE)
+                .addField(TypeName.BOOLEAN, "closed", Modifier.PRIVATE, Modifier.VOLATILE)
+                .addField(FieldSpec
+                        .builder(TypeName.LONG, "nextBlockNumber", Modifier.PRIVATE)
+                        .initializer("-1")
+                        .build()
+                );
+        typeBuilder.addMethod(MethodSpec
+                .constructorBuilder()
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(NETWORK_CLASS, "network")
+                .addParameter(String.class, "chaincodeName")
+                .addParameter(GSON_CLASS, "gson")
+                .addStatement("this.network = network")
+                .addStatement("this.chaincodeName = chaincodeName")
+                .addStatement("this.gson = gson")
+                .build()
+        );
+        classes.getEvents().get().forEach((eventName, payloadType) -> {
+            TypeName payloadClass = declareCustomClass(payloadType);
+            typeBuilder.addMethod(MethodSpec
+                    .methodBuilder("on" + eventName)
+                    .addModifiers(Modifier.PUBLIC)
+                    .returns(listenerClass)
+                    .addParameter(ParameterizedTypeName.get(handlerClass, payloadClass), "handler")
+                    .addStatement("$T<$T> typeToken = new $T<>(){}", GSON_TYPE_TOKEN_CLASS, payloadClass, GSON_TYPE_TOKEN_CLASS)
+                    .addStatement("this.handlers.put($T.$L, event -> handler.handle(event, decode(event, typeToken)))", eventsClass, castNameToConstant(eventName))
+                    .addStatement("return this")
+                    .build()
+            );
+        });
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("onError")
+                .addModifiers(Modifier.PUBLIC)
+                .addJavadoc("Receive handler and event stream failures, which are ignored by default.\n")
+                .returns(listenerClass)
+                .addParameter(errorHandlerType, "errorHandler")
+                .addStatement("this.errorHandler = errorHandler")
+                .addStatement("return this")
+                .build()
+        );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("start")
+                .addModifiers(Modifier.PUBLIC, Modifier.SYNCHRONIZED)
+                .returns(listenerClass)
+                .beginControlFlow("if (this.thread != null)")
+                .addStatement("throw new $T($S)", IllegalStateException.class, "Listener already started.")
+                .endControlFlow()
+                .addStatement("this.thread = new $T(this::listen, $S)", Thread.class, "contract-event-listener")
+                .addStatement("this.thread.setDaemon(true)")
+                .addStatement("this.thread.start()")
+                .addStatement("return this")
+                .build()
+        );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("close")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC, Modifier.SYNCHRONIZED)
+                .addStatement("this.closed = true")
+                .addStatement("$T current = this.events", eventIteratorType)
+                .beginControlFlow("if (current != null)")
+                .addStatement("current.close()")
+                .endControlFlow()
+                .beginControlFlow("if (this.thread != null)")
+                .addStatement("this.thread.interrupt()")
+                .endControlFlow()
+                .build()
+        );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("listen")
+                .addModifiers(Modifier.PRIVATE)
+                .beginControlFlow("while (!this.closed)")
+                .beginControlFlow("try ($T iterator = openEvents())", eventIteratorType)
+                .addStatement("this.events = iterator")
+                .beginControlFlow("while (iterator.hasNext())")
+                .addStatement("dispatch(iterator.next())")
+                .endControlFlow()
+                .nextControlFlow("catch ($T e)", RuntimeException.class)
+                .beginControlFlow("if (this.closed)")
+                .addStatement("return")
+                .endControlFlow()
+                .addStatement("this.errorHandler.accept(e)")
+                .endControlFlow()
+                .beginControlFlow("try")
+                .addStatement("$T.sleep(1000)", Thread.class)
+                .nextControlFlow("catch ($T e)", InterruptedException.class)
+                .addStatement("return")
+                .endControlFlow()
+                .endControlFlow()
+                .build()
+        );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("openEvents")
+                .addModifiers(Modifier.PRIVATE)
+                .returns(eventIteratorType)
+                .beginControlFlow("if (this.nextBlockNumber < 0)")
+                .addStatement("return this.network.getChaincodeEvents(this.chaincodeName)")
+                .endControlFlow()
+                .addStatement("return this.network.newChaincodeEventsRequest(this.chaincodeName).startBlock(this.nextBlockNumber).build().getEvents()")
+                .build()
+        );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("dispatch")
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(CHAINCODE_EVENT_CLASS, "event")
+                .addStatement("this.nextBlockNumber = event.getBlockNumber() + 1")
+                .addStatement("$T<$T> handler = this.handlers.get(event.getEventName())",
+                        java.util.function.Consumer.class, CHAINCODE_EVENT_CLASS)
+                .beginControlFlow("if (handler == null)")
+                .addStatement("return")
+                .endControlFlow()
+                .beginControlFlow("try")
+                .addStatement("handler.accept(event)")
+                .nextControlFlow("catch ($T e)", RuntimeException.class)
+                .addStatement("this.errorHandler.accept(e)")
+                .endControlFlow()
+                .build()
+        );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("decode")
+                .addModifiers(Modifier.PRIVATE)
+                .addTypeVariable(genericClass)
+                .returns(genericClass)
+                .addParameter(CHAINCODE_EVENT_CLASS, "event")
+                .addParameter(ParameterizedTypeName.get(GSON_TYPE_TOKEN_CLASS, genericClass), "typeToken")
+                .addStatement("return $T.decode(this.gson, event.getPayload(), typeToken.getType())", JSON_DECODER_CLASS)
+                .build()
+        );
+        return typeBuilder.build();
+    }
+
+    /**
+     * Bounded LRU cache of successful evaluate responses with a TTL, invalidated by state key.
+     * Any invalidation while a response is loading keeps that response out of the cache, so a read racing with a
+     * commit never caches the stale value.
+     */
+    private TypeSpec generateEvaluateCacheClass() {
+        TypeVariableName genericClass = TypeVariableName.get("T");
+        TypeName responseType = ParameterizedTypeName.get(declareCustomClass(RESPONSE_BODY_CLASS_NAME), genericClass);
+        TypeName keyType = ParameterizedTypeName.get(List.class, Object.class);
+        ClassName entryClass = ClassName.get("", "Entry");
+        ClassName loaderClass = ClassName.get("", CACHE_LOADER_CLASS_NAME);
+        TypeSpec loaderInterface = TypeSpec.interfaceBuilder(CACHE_LOADER_CLASS_NAME)
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(FunctionalInterface.class)
+                .addTypeVariable(genericClass)
+                .addMethod(MethodSpec
+                        .methodBuilder("load")
+                        .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
+                        .returns(responseType)
+                        .addException(Exception.class)
+                        .build()
+                )
+                .build();
+        TypeSpec entryType = TypeSpec.classBuilder("Entry")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .addAnnotation(LOMBOK_REQ_ARGUS_CONS_ANNOTATION)
+                .addField(Object.class, "response", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(String.class, "stateKey", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(TypeName.LONG, "expireAtNanos", Modifier.PRIVATE, Modifier.FINAL)
+                .build();
+        TypeSpec.Builder typeBuilder = TypeSpec.classBuilder(EVALUATE_CACHE_CLASS_NAME)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addType(loaderInterface)
+                .addType(entryType)
+                .addField(TypeName.INT, "maxSize", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(TypeName.LONG, "ttlNanos", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(FieldSpec
+                        .builder(ParameterizedTypeName.get(ClassName.get(LinkedHashMap.class), keyType, entryClass), "entries", Modifier.PRIVATE, Modifier.FINAL)
+                        .initializer("new $T<>(16, 0.75f, true)", LinkedHashMap.class)
+                        .build()
+                )
+                .addField(FieldSpec
+                        .builder(ParameterizedTypeName.get(ClassName.get(Map.class), ClassName.get(String.class), ParameterizedTypeName.get(ClassName.get(Set.class), keyType)), "keysByState", Modifier.PRIVATE, Modifier.FINAL)
+                        .initializer("new $T<>()", HashMap.class)
+                        .build()
+                )
+                .addField(TypeName.LONG, "epoch", Modifier.PRIVATE);
+        typeBuilder.addMethod(MethodSpec
+                .constructorBuilder()
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(TypeName.INT, "maxSize")
+                .addParameter(TypeName.LONG, "ttl")
+                .addParameter(TimeUnit.class, "unit")
+                .addStatement("this.maxSize = maxSize")
+                .addStatement("this.ttlNanos = unit.toNanos(ttl)")
+                .build()
+        );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("get")
+                .addModifiers(Modifier.PUBLIC)
+                .addJavadoc("@param stateKey state key read by the loader, cached response is dropped when it is written.\n")
+                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class).addMember("value", "$S", "unchecked").build())
+                .addTypeVariable(genericClass)
+                .returns(responseType)
+                .addParameter(keyType, "key")
+                .addParameter(String.class, "stateKey")
+                .addParameter(ParameterizedTypeName.get(loaderClass, genericClass), "loader")
+                .addException(Exception.class)
+                .addStatement("long loadEpoch")
+                .beginControlFlow("synchronized (this)")
+                .addStatement("$T entry = this.entries.get(key)", entryClass)
+                .beginControlFlow("if (entry != null && entry.expireAtNanos - $T.nanoTime() > 0)", System.class)
+                .addStatement("return ($T) entry.response", responseType)
+                .endControlFlow()
+                .beginControlFlow("if (entry != null)")
+                .addStatement("remove(key, entry)")
+                .endControlFlow()
+                .addStatement("loadEpoch = this.epoch")
+                .endControlFlow()
+                .addStatement("$T response = loader.load()", responseType)
+                .beginControlFlow("if (response == null || response.getCode() != 0)")
+                .addStatement("return response")
+                .endControlFlow()
+                .beginControlFlow("synchronized (this)")
+                .beginControlFlow("if (loadEpoch == this.epoch)")
+                .addStatement("put(key, new $T(response, stateKey, $T.nanoTime() + this.ttlNanos))", entryClass, System.class)
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("return response")
+                .build()
+        );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("invalidate")
+                .addModifiers(Modifier.PUBLIC, Modifier.SYNCHRONIZED)
+                .addParameter(String.class, "stateKey")
+                .addStatement("this.epoch++")
+                .addStatement("$T keys = this.keysByState.remove(stateKey)", ParameterizedTypeName.get(ClassName.get(Set.class), keyType))
+                .beginControlFlow("if (keys != null)")
+                .addStatement("keys.forEach(this.entries::remove)")
+                .endControlFlow()
+                .build()
+        );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("invalidateAll")
+                .addModifiers(Modifier.PUBLIC, Modifier.SYNCHRONIZED)
+                .addStatement("this.epoch++")
+                .addStatement("this.entries.clear()")
+                .addStatement("this.keysByState.clear()")
+                .build()
+        );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("size")
+                .addModifiers(Modifier.PUBLIC, Modifier.SYNCHRONIZED)
+                .returns(TypeName.INT)
+                .addStatement("return this.entries.size()")
+                .build()
+        );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("put")
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(keyType, "key")
+                .addParameter(entryClass, "entry")
+                .addStatement("$T previous = this.entries.put(key, entry)", entryClass)
+                .beginControlFlow("if (previous != null)")
+                .addStatement("removeKeyOfState(key, previous.stateKey)")
+                .endControlFlow()
+                .addStatement("this.keysByState.computeIfAbsent(entry.stateKey, __ -> new $T<>()).add(key)", HashSet.class)
+                .beginControlFlow("if (this.entries.size() > this.maxSize)")
+                .addStatement("$T<$T<$T, $T>> eldest = this.entries.entrySet().iterator()", Iterator.class, Map.Entry.class, keyType, entryClass)
+                .addStatement("$T<$T, $T> eldestEntry = eldest.next()", Map.Entry.class, keyType, entryClass)
+                .addStatement("eldest.remove()")
+                .addStatement("removeKeyOfState(eldestEntry.getKey(), eldestEntry.getValue().stateKey)")
+                .endControlFlow()
+                .build()
+        );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("remove")
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(keyType, "key")
+                .addParameter(entryClass, "entry")
+                .addStatement("this.entries.remove(key)")
+                .addStatement("removeKeyOfState(key, entry.stateKey)")
+                .build()
+        );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("removeKeyOfState")
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(keyType, "key")
+                .addParameter(String.class, "stateKey")
+                .addStatement("$T keys = this.keysByState.get(stateKey)", ParameterizedTypeName.get(ClassName.get(Set.class), keyType))
+                .beginControlFlow("if (keys != null && keys.remove(key) && keys.isEmpty())")
+                .addStatement("this.keysByState.remove(stateKey)")
+                .endControlFlow()
+                .build()
+        );
+        return typeBuilder.build();
     }
 
     private MethodSpec buildApiMethodEvaluate(ApiMethodDefinition def) {
-        TypeName returnType = ParameterizedTypeName.get(declareCustomClass(RESPONSE_BODY_CLASS_NAME), declareCustomClass(def.getReturnType().get()));
+        TypeName returnType = resolveResponseType(def);
+        String responseTypeConstant = responseTypeConstant(def);
         MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder(def.getName());
         methodBuilder.returns(returnType)
                 .addModifiers(Modifier.PUBLIC, Modifier.DEFAULT);
@@ -96,14 +681,30 @@ public final class ApplicationApiGenerator extends AbstractApiGenerator {
             ClassName paramType = declareCustomClass(paramTypeName);
             methodBuilder.addParameter(paramType, paramName);
         });
-        Set<String> actualParams = def.getParameters().get().keySet();
-        String actualParamsStr = actualParams.isEmpty() ? "" : ", " + String.join(", ", actualParams);
+        String actualParamsStr = def.getParameters().get().isEmpty() ? "" : ", " + buildArgumentsStr(def);
+        if (metrics) {
+            CodeBlock metricsExpr = CodeBlock.of("metrics");
+            CodeBlock methodExpr = CodeBlock.of("$S", def.getName());
+            CodeBlock measuredCode = CodeBlock.builder()
+                    .addStatement("long startNanos = $T.nanoTime()", System.class)
+                    .addStatement("byte[] evaluatedBytes")
+                    .add(recordErrors(metricsExpr, methodExpr, "EVALUATE", CodeBlock.of("evaluatedBytes = this.$L().evaluateTransaction($S$L)",
+                            INJECTED_CONTRACT_METHOD_NAME, def.getName(), actualParamsStr)))
+                    .addStatement("long evaluatedNanos = $T.nanoTime()", System.class)
+                    .addStatement("metrics.recordLatency($S, $T.EVALUATE, evaluatedNanos - startNanos)", def.getName(), METRICS_CLASS)
+                    .addStatement("$T response", returnType)
+                    .add(recordErrors(metricsExpr, methodExpr, "DECODE", CodeBlock.of("response = $T.decode(this.$L(), evaluatedBytes, $L)",
+                            JSON_DECODER_CLASS, INJECTED_GSON_METHOD_NAME, responseTypeConstant)))
+                    .addStatement("metrics.recordLatency($S, $T.DECODE, $T.nanoTime() - evaluatedNanos)", def.getName(), METRICS_CLASS, System.class)
+                    .addStatement("return response")
+                    .build();
+            return methodBuilder.addCode(measureInFlight(def.getName(), measuredCode))
+                    .addException(Exception.class)
+                    .build();
+        }
         CodeBlock.Builder codeBuilder = CodeBlock.builder()
                 .addStatement("byte[] evaluatedBytes = this.$L().evaluateTransaction($S$L)", INJECTED_CONTRACT_METHOD_NAME, def.getName(), actualParamsStr)
-                .addStatement("$T reader = new $T(new $T(evaluatedBytes))", Reader.class, InputStreamReader.class, ByteArrayInputStream.class)
-                .addStatement("$T gson = this.$L()", GSON_CLASS, INJECTED_GSON_METHOD_NAME)
-                .addStatement("$T<$T> typeToken = new $T<>(){}", GSON_TYPE_TOKEN_CLASS, returnType, GSON_TYPE_TOKEN_CLASS)
-                .addStatement("return gson.fromJson(reader, typeToken.getType())");
+                .addStatement("return $T.decode(this.$L(), evaluatedBytes, $L)", JSON_DECODER_CLASS, INJECTED_GSON_METHOD_NAME, responseTypeConstant);
         methodBuilder.addCode(codeBuilder.build())
                 .addException(Exception.class);
         return methodBuilder.build();
@@ -112,15 +713,34 @@ public final class ApplicationApiGenerator extends AbstractApiGenerator {
     private MethodSpec buildApiMethodSubmit(ApiMethodDefinition def) {
         MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder(def.getName());
         TypeName returnType = ParameterizedTypeName.get(PROPOSED_SUBMIT_RES_CLASS, declareCustomClass(def.getReturnType().get()));
-        TypeName responseType = ParameterizedTypeName.get(declareCustomClass(RESPONSE_BODY_CLASS_NAME), declareCustomClass(def.getReturnType().get()));
+        String responseTypeConstant = responseTypeConstant(def);
         methodBuilder.returns(returnType)
                 .addModifiers(Modifier.PUBLIC, Modifier.DEFAULT);
         def.getParameters().get().forEach((paramName, paramTypeName) -> {
             ClassName paramType = declareCustomClass(paramTypeName);
             methodBuilder.addParameter(paramType, paramName);
         });
-        Set<String> actualParams = def.getParameters().get().keySet();
-        String actualParamsStr = actualParams.isEmpty() ? "" : String.join(", ", actualParams);
+        String actualParamsStr = buildArgumentsStr(def);
+        if (metrics) {
+            CodeBlock metricsExpr = CodeBlock.of("metrics");
+            CodeBlock methodExpr = CodeBlock.of("$S", def.getName());
+            CodeBlock measuredCode = CodeBlock.builder()
+                    .addStatement("long startNanos = $T.nanoTime()", System.class)
+                    .addStatement("$T transaction", TRANSACTION_CLASS)
+                    .add(recordErrors(metricsExpr, methodExpr, "ENDORSE", CodeBlock.of("transaction = this.$L().newProposal($S).addArguments($L).build().endorse()",
+                            INJECTED_CONTRACT_METHOD_NAME, def.getName(), actualParamsStr)))
+                    .addStatement("long endorsedNanos = $T.nanoTime()", System.class)
+                    .addStatement("metrics.recordLatency($S, $T.ENDORSE, endorsedNanos - startNanos)", def.getName(), METRICS_CLASS)
+                    .addStatement("$T commit", SUBMITTED_TRANSACTION_CLASS)
+                    .add(recordErrors(metricsExpr, methodExpr, "SUBMIT", CodeBlock.of("commit = transaction.submitAsync()")))
+                    .addStatement("metrics.recordLatency($S, $T.SUBMIT, $T.nanoTime() - endorsedNanos)", def.getName(), METRICS_CLASS, System.class)
+                    .addStatement("return new $T<>(commit, this.$L(), $L, this.$L(), $S, metrics)",
+                            PROPOSED_SUBMIT_RES_CLASS, INJECTED_GSON_METHOD_NAME, responseTypeConstant, INJECTED_EXECUTOR_METHOD_NAME, def.getName())
+                    .build();
+            return methodBuilder.addCode(measureInFlight(def.getName(), measuredCode))
+                    .addException(Exception.class)
+                    .build();
+        }
         CodeBlock.Builder codeBuilder = CodeBlock.builder()
                 .add("$T commit = this.$L()\n", SUBMITTED_TRANSACTION_CLASS, INJECTED_CONTRACT_METHOD_NAME)
                 .add("\t.newProposal($S)\n", def.getName())
@@ -128,13 +748,107 @@ public final class ApplicationApiGenerator extends AbstractApiGenerator {
                 .add("\t.build()\n")
                 .add("\t.endorse()\n")
                 .addStatement("\t.submitAsync()")
-                .addStatement("$T<$T> typeToken = new $T<>(){}", GSON_TYPE_TOKEN_CLASS, responseType, GSON_TYPE_TOKEN_CLASS)
-                .addStatement("return new $T<>(commit, this.$L(), typeToken)", PROPOSED_SUBMIT_RES_CLASS, INJECTED_GSON_METHOD_NAME);
+                .addStatement("return new $T<>(commit, this.$L(), $L, this.$L())", PROPOSED_SUBMIT_RES_CLASS, INJECTED_GSON_METHOD_NAME, responseTypeConstant, INJECTED_EXECUTOR_METHOD_NAME);
         methodBuilder.addCode(codeBuilder.build())
                 .addException(Exception.class);
         return methodBuilder.build();
     }
 
+    private TypeName resolveResponseType(ApiMethodDefinition def) {
+        return ParameterizedTypeName.get(declareCustomClass(RESPONSE_BODY_CLASS_NAME), resolveBodyType(def));
+    }
+
+    private String responseTypeConstant(ApiMethodDefinition def) {
+        return castNameToConstant(def.getName()) + RESPONSE_TYPE_CONSTANT_SUFFIX;
+    }
+
+    /**
+     * Count the blocking call of {@code methodName} as in flight while {@code measuredCode} runs.
+     */
+    private CodeBlock measureInFlight(String methodName, CodeBlock measuredCode) {
+        return CodeBlock.builder()
+                .addStatement("$T metrics = this.$L()", METRICS_CLASS, INJECTED_METRICS_METHOD_NAME)
+                .addStatement("metrics.addInFlight($S, 1)", methodName)
+                .beginControlFlow("try")
+                .add(measuredCode)
+                .nextControlFlow("finally")
+                .addStatement("metrics.addInFlight($S, -1)", methodName)
+                .endControlFlow()
+                .build();
+    }
+
+    /**
+     * Record any exception thrown by {@code statement} as an error of {@code phase}, then rethrow it.
+     */
+    private CodeBlock recordErrors(CodeBlock metricsExpr, CodeBlock methodExpr, String phase, CodeBlock statement) {
+        return CodeBlock.builder()
+                .beginControlFlow("try")
+                .addStatement("$L", statement)
+                .nextControlFlow("catch ($T e)", Exception.class)
+                .addStatement("$L.recordError($L, $T.$L, $T.statusOf(e))", metricsExpr, methodExpr, METRICS_CLASS, phase, METRICS_CLASS)
+                .addStatement("throw e")
+                .endControlFlow()
+                .build();
+    }
+
+    /**
+     * Non-blocking variant of a blocking api method, running it on the injected executor.
+     */
+    private MethodSpec buildApiMethodAsync(ApiMethodDefinition def, MethodSpec blockingMethod) {
+        MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder(def.getName() + ASYNC_METHOD_SUFFIX);
+        methodBuilder.returns(ParameterizedTypeName.get(COMPLETABLE_FUTURE_CLASS, blockingMethod.returnType.box()))
+                .addModifiers(Modifier.PUBLIC, Modifier.DEFAULT)
+                .addJavadoc("Run {@link #$L} on {@link #$L()}.\n", def.getName(), INJECTED_EXECUTOR_METHOD_NAME)
+                .addParameters(blockingMethod.parameters);
+        String actualParamsStr = String.join(", ", def.getParameters().get().keySet());
+        CodeBlock.Builder codeBuilder = CodeBlock.builder()
+                .add("return $T.supplyAsync(() -> {\n", COMPLETABLE_FUTURE_CLASS)
+                .indent()
+                .beginControlFlow("try")
+                .addStatement("return this.$L($L)", def.getName(), actualParamsStr)
+                .nextControlFlow("catch ($T e)", Exception.class)
+                .addStatement("throw new $T(e)", CompletionException.class)
+                .endControlFlow()
+                .unindent()
+                .addStatement("}, this.$L())", INJECTED_EXECUTOR_METHOD_NAME);
+        return methodBuilder.addCode(codeBuilder.build()).build();
+    }
+
+    private MethodSpec buildApiMethodPageIterator(ApiMethodDefinition def) {
+        ClassName recordType = declareCustomClass(def.getReturnType().get());
+        MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder(def.getName() + "Iterator");
+        methodBuilder.returns(ParameterizedTypeName.get(ClassName.get(Iterator.class), recordType))
+                .addModifiers(Modifier.PUBLIC, Modifier.DEFAULT)
+                .addJavadoc("Iterate all records of {@link #$L}, fetching the next page only when the previous one is consumed.\n", def.getName());
+        def.getParameters().get().forEach((paramName, paramTypeName) -> {
+            if (!BOOKMARK_PARAM_NAME.equals(paramName)) {
+                methodBuilder.addParameter(declareCustomClass(paramTypeName), paramName);
+            }
+        });
+        String actualParamsStr = String.join(", ", def.getParameters().get().keySet());
+        methodBuilder.addStatement("return new $T<>($L, $L -> this.$L($L))",
+                PAGE_ITERATOR_CLASS, PAGE_SIZE_PARAM_NAME, BOOKMARK_PARAM_NAME, def.getName(), actualParamsStr);
+        return methodBuilder.build();
+    }
+
+    /**
+     * Contract arguments are always strings, so convert non-string parameters before passing.
+     * List parameters are passed as JSON arrays.
+     */
+    private String buildArgumentsStr(ApiMethodDefinition def) {
+        List<String> arguments = new ArrayList<>();
+        def.getParameters().get().forEach((paramName, paramTypeName) -> {
+            if (isStringType(paramTypeName)) {
+                arguments.add(paramName);
+            } else if (isListType(paramTypeName)) {
+                arguments.add(String.format("this.%s().toJson(%s)", INJECTED_GSON_METHOD_NAME, paramName));
+            } else {
+                arguments.add(String.format("String.valueOf(%s)", paramName));
+            }
+        });
+        return String.join(", ", arguments);
+    }
+
     private TypeSpec generateContextInjectInterface() {
         TypeSpec.Builder typeBuilder = TypeSpec.interfaceBuilder(INJECT_CLASS_NAME);
         typeBuilder.addModifiers(Modifier.PUBLIC);
@@ -150,6 +864,80 @@ public final class ApplicationApiGenerator extends AbstractApiGenerator {
                 .returns(GSON_CLASS)
                 .build()
         );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder(INJECTED_EXECUTOR_METHOD_NAME)
+                .addModifiers(Modifier.ABSTRACT, Modifier.PUBLIC)
+                .addJavadoc("Executor running endorsement, submission and commit status waiting of async api methods.\n")
+                .returns(Executor.class)
+                .build()
+        );
+        if (metrics) {
+            typeBuilder.addMethod(MethodSpec
+                    .methodBuilder(INJECTED_METRICS_METHOD_NAME)
+                    .addModifiers(Modifier.DEFAULT, Modifier.PUBLIC)
+                    .returns(METRICS_CLASS)
+                    .addStatement("return $T.NOOP", METRICS_CLASS)
+                    .build()
+            );
+        }
+        return typeBuilder.build();
+    }
+
+    /**
+     * Pluggable receiver of per method latencies by phase, error counts by status and in-flight blocking calls,
+     * with a no-op default.
+     */
+    private TypeSpec generateMetricsInterface() {
+        TypeSpec.Builder typeBuilder = TypeSpec.interfaceBuilder(METRICS_CLASS_NAME)
+                .addModifiers(Modifier.PUBLIC)
+                .addJavadoc("Measurements of api methods, recorded on the calling thread. Implementations must be thread safe and cheap.\n");
+        METRICS_PHASES.forEach(phase -> typeBuilder.addField(FieldSpec
+                .builder(String.class, phase, Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .initializer("$S", phase.toLowerCase(Locale.ROOT))
+                .build()
+        ));
+        typeBuilder.addField(FieldSpec
+                .builder(METRICS_CLASS, "NOOP", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .initializer("new $T() {\n}", METRICS_CLASS)
+                .build()
+        );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("recordLatency")
+                .addModifiers(Modifier.PUBLIC, Modifier.DEFAULT)
+                .addParameter(String.class, "method")
+                .addParameter(String.class, "phase")
+                .addParameter(TypeName.LONG, "nanos")
+                .build()
+        );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("recordError")
+                .addModifiers(Modifier.PUBLIC, Modifier.DEFAULT)
+                .addJavadoc("@param status gRPC status code of a {@code GatewayException}, validation code of an invalid transaction, or\n"
+                        + "the simple class name of any other exception.\n")
+                .addParameter(String.class, "method")
+                .addParameter(String.class, "phase")
+                .addParameter(String.class, "status")
+                .build()
+        );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("addInFlight")
+                .addModifiers(Modifier.PUBLIC, Modifier.DEFAULT)
+                .addJavadoc("@param delta {@code 1} when a blocking call of the method starts, {@code -1} when it returns.\n")
+                .addParameter(String.class, "method")
+                .addParameter(TypeName.INT, "delta")
+                .build()
+        );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("statusOf")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(String.class)
+                .addParameter(Exception.class, "e")
+                .beginControlFlow("if (e instanceof $T)", GATEWAY_EXCEPTION_CLASS)
+                .addStatement("return (($T) e).getStatus().getCode().name()", GATEWAY_EXCEPTION_CLASS)
+                .endControlFlow()
+                .addStatement("return e.getClass().getSimpleName()")
+                .build()
+        );
         return typeBuilder.build();
     }
 
@@ -181,16 +969,58 @@ public final class ApplicationApiGenerator extends AbstractApiGenerator {
                 .build()
         );
         typeBuilder.addField(FieldSpec
-                .builder(ParameterizedTypeName.get(GSON_TYPE_TOKEN_CLASS, apiResponseType), "responseTypeToken")
+                .builder(Type.class, "responseType")
                 .addModifiers(Modifier.FINAL, Modifier.PRIVATE)
                 .build()
         );
+        typeBuilder.addField(FieldSpec
+                .builder(Executor.class, "executor")
+                .addModifiers(Modifier.FINAL, Modifier.PRIVATE)
+                .build()
+        );
+        if (metrics) {
+            typeBuilder.addField(String.class, "methodName", Modifier.FINAL, Modifier.PRIVATE);
+            typeBuilder.addField(METRICS_CLASS, "metrics", Modifier.FINAL, Modifier.PRIVATE);
+        }
+        typeBuilder.addField(FieldSpec
+                .builder(ParameterizedTypeName.get(COMPLETABLE_FUTURE_CLASS, SUBMIT_STATUS_CLASS), "statusFuture")
+                .addModifiers(Modifier.PRIVATE)
+                .build()
+        );
         typeBuilder.addField(FieldSpec
                 .builder(Object.class, "lock")
                 .addModifiers(Modifier.FINAL, Modifier.PRIVATE)
                 .initializer("new $T()", Object.class)
                 .build()
         );
+        CodeBlock getStatusCode = CodeBlock.builder()
+                .addStatement("this.status = this.transaction.getStatus()")
+                .build();
+        CodeBlock decodeCode = CodeBlock.builder()
+                .addStatement("this.response = $T.decode(this.gson, evaluatedBytes, this.responseType)", JSON_DECODER_CLASS)
+                .build();
+        if (metrics) {
+            CodeBlock metricsExpr = CodeBlock.of("this.metrics");
+            CodeBlock methodExpr = CodeBlock.of("this.methodName");
+            getStatusCode = CodeBlock.builder()
+                    .addStatement("long startNanos = $T.nanoTime()", System.class)
+                    .addStatement("this.metrics.addInFlight(this.methodName, 1)")
+                    .beginControlFlow("try")
+                    .add(recordErrors(metricsExpr, methodExpr, "COMMIT", CodeBlock.of("this.status = this.transaction.getStatus()")))
+                    .nextControlFlow("finally")
+                    .addStatement("this.metrics.addInFlight(this.methodName, -1)")
+                    .endControlFlow()
+                    .addStatement("this.metrics.recordLatency(this.methodName, $T.COMMIT, $T.nanoTime() - startNanos)", METRICS_CLASS, System.class)
+                    .beginControlFlow("if (!this.status.isSuccessful())")
+                    .addStatement("this.metrics.recordError(this.methodName, $T.COMMIT, this.status.getCode().name())", METRICS_CLASS)
+                    .endControlFlow()
+                    .build();
+            decodeCode = CodeBlock.builder()
+                    .addStatement("long startNanos = $T.nanoTime()", System.class)
+                    .add(recordErrors(metricsExpr, methodExpr, "DECODE", CodeBlock.of("this.response = $T.decode(this.gson, evaluatedBytes, this.responseType)", JSON_DECODER_CLASS)))
+                    .addStatement("this.metrics.recordLatency(this.methodName, $T.DECODE, $T.nanoTime() - startNanos)", METRICS_CLASS, System.class)
+                    .build();
+        }
         typeBuilder.addMethod(MethodSpec
                 .methodBuilder("blockingGetSubmitStatus")
                 .addModifiers(Modifier.PUBLIC)
@@ -203,7 +1033,7 @@ public final class ApplicationApiGenerator extends AbstractApiGenerator {
                 .beginControlFlow("if (this.status != null)")
                 .addStatement("return this.status")
                 .endControlFlow()
-                .addStatement("this.status = this.transaction.getStatus()")
+                .addCode(getStatusCode)
                 .addStatement("return this.status")
                 .endControlFlow()
                 .build()
@@ -220,31 +1050,150 @@ public final class ApplicationApiGenerator extends AbstractApiGenerator {
                 .addStatement("return this.response")
                 .endControlFlow()
                 .addStatement("byte[] evaluatedBytes = this.transaction.getResult()")
-                .addStatement("$T reader = new $T(new $T(evaluatedBytes))", Reader.class, InputStreamReader.class, ByteArrayInputStream.class)
-                .addStatement("this.response = this.gson.fromJson(reader, this.responseTypeToken.getType())")
+                .addCode(decodeCode)
                 .addStatement("return this.response")
                 .endControlFlow()
                 .build()
         );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("getTransactionId")
+                .addModifiers(Modifier.PUBLIC)
+                .returns(String.class)
+                .addStatement("return this.transaction.getTransactionId()")
+                .build()
+        );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("getSubmitStatusAsync")
+                .addModifiers(Modifier.PUBLIC)
+                .addJavadoc("Wait for the commit status on the executor, sharing one wait between all callers.\n")
+                .returns(ParameterizedTypeName.get(COMPLETABLE_FUTURE_CLASS, SUBMIT_STATUS_CLASS))
+                .beginControlFlow("synchronized (this.lock)")
+                .beginControlFlow("if (this.statusFuture == null)")
+                .addCode(CodeBlock.builder()
+                        .add("this.statusFuture = $T.supplyAsync(() -> {\n", COMPLETABLE_FUTURE_CLASS)
+                        .indent()
+                        .beginControlFlow("try")
+                        .addStatement("return blockingGetSubmitStatus()")
+                        .nextControlFlow("catch ($T e)", SUBMIT_STATUS_EXCEPTION_CLASS)
+                        .addStatement("throw new $T(e)", CompletionException.class)
+                        .endControlFlow()
+                        .unindent()
+                        .addStatement("}, this.executor)")
+                        .build()
+                )
+                .endControlFlow()
+                .addStatement("return this.statusFuture")
+                .endControlFlow()
+                .build()
+        );
         return typeBuilder.build();
     }
 
     private TypeSpec generateComplexInterfaceImpl(ClassesDefinition classes) {
         TypeSpec.Builder typeBuilder = TypeSpec.classBuilder(classes.getComplexApiClassName().get());
         typeBuilder.addModifiers(Modifier.PUBLIC, Modifier.FINAL);
+        MethodSpec.Builder gsonBuilderMethod = MethodSpec
+                .methodBuilder("newGsonBuilder")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addJavadoc("Gson builder with the pojo type adapters registered, to register application adapters on.\n"
+                        + "Build one {@code Gson} and share it, since each instance caches its own adapters.\n")
+                .returns(GSON_BUILDER_CLASS)
+                .addCode("return new $T()", GSON_BUILDER_CLASS)
+                .addCode("\n$>$>.disableHtmlEscaping()");
+        classes.getPojos()
+                .stream()
+                .filter(this::hasTypeAdapter)
+                .forEach(def -> gsonBuilderMethod.addCode("\n.registerTypeAdapter($T.class, new $T())",
+                        declareCustomClass(def.getName()), ClassName.get("", def.getName(), GSON_TYPE_ADAPTER_CLASS_NAME)));
+        typeBuilder.addMethod(gsonBuilderMethod.addCode(";\n$<$<").build());
+        typeBuilder.addType(TypeSpec.classBuilder("DefaultGsonHolder")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .addField(FieldSpec
+                        .builder(GSON_CLASS, "INSTANCE", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("newGsonBuilder().create()")
+                        .build()
+                )
+                .build()
+        );
+        typeBuilder.addMethod(MethodSpec
+                .constructorBuilder()
+                .addModifiers(Modifier.PUBLIC)
+                .addJavadoc("Use a shared {@code Gson} built by {@link #newGsonBuilder()}.\n")
+                .addParameter(API_CONTRACT_CLASS, "contract")
+                .addStatement("this(contract, DefaultGsonHolder.INSTANCE)")
+                .build()
+        );
         typeBuilder.addField(API_CONTRACT_CLASS, "contract", Modifier.FINAL, Modifier.PRIVATE);
         typeBuilder.addField(GSON_CLASS, "gson", Modifier.FINAL, Modifier.PRIVATE);
+        typeBuilder.addField(Executor.class, "executor", Modifier.FINAL, Modifier.PRIVATE);
+        if (metrics) {
+            typeBuilder.addField(METRICS_CLASS, "metrics", Modifier.FINAL, Modifier.PRIVATE);
+        }
         typeBuilder.addSuperinterface(API_CONTRACT_INJECT_CLASS);
 
-        MethodSpec constructor = MethodSpec
+        typeBuilder.addMethod(MethodSpec
                 .constructorBuilder()
                 .addModifiers(Modifier.PUBLIC)
+                .addJavadoc("Run async api methods on a shared {@link #newAsyncExecutor(int) pool} of {@link #DEFAULT_ASYNC_THREADS} threads.\n")
                 .addParameter(API_CONTRACT_CLASS, "contract")
                 .addParameter(GSON_CLASS, "gson")
-                .addStatement("this.contract = contract")
-                .addStatement("this.gson = gson")
-                .build();
-        typeBuilder.addMethod(constructor);
+                .addStatement("this(contract, gson, DefaultExecutorHolder.INSTANCE)")
+                .build()
+        );
+        if (metrics) {
+            typeBuilder.addMethod(MethodSpec
+                    .constructorBuilder()
+                    .addModifiers(Modifier.PUBLIC)
+                    .addJavadoc("Run async api methods on a shared {@link #newAsyncExecutor(int) pool} of {@link #DEFAULT_ASYNC_THREADS} threads.\n")
+                    .addParameter(API_CONTRACT_CLASS, "contract")
+                    .addParameter(GSON_CLASS, "gson")
+                    .addParameter(METRICS_CLASS, "metrics")
+                    .addStatement("this(contract, gson, DefaultExecutorHolder.INSTANCE, metrics)")
+                    .build()
+            );
+            typeBuilder.addMethod(MethodSpec
+                    .constructorBuilder()
+                    .addModifiers(Modifier.PUBLIC)
+                    .addParameter(API_CONTRACT_CLASS, "contract")
+                    .addParameter(GSON_CLASS, "gson")
+                    .addParameter(Executor.class, "executor")
+                    .addStatement("this(contract, gson, executor, $T.NOOP)", METRICS_CLASS)
+                    .build()
+            );
+            typeBuilder.addMethod(MethodSpec
+                    .constructorBuilder()
+                    .addModifiers(Modifier.PUBLIC)
+                    .addParameter(API_CONTRACT_CLASS, "contract")
+                    .addParameter(GSON_CLASS, "gson")
+                    .addParameter(Executor.class, "executor")
+                    .addParameter(METRICS_CLASS, "metrics")
+                    .addStatement("this.contract = contract")
+                    .addStatement("this.gson = gson")
+                    .addStatement("this.executor = executor")
+                    .addStatement("this.metrics = metrics")
+                    .build()
+            );
+        } else {
+            typeBuilder.addMethod(MethodSpec
+                    .constructorBuilder()
+                    .addModifiers(Modifier.PUBLIC)
+                    .addParameter(API_CONTRACT_CLASS, "contract")
+                    .addParameter(GSON_CLASS, "gson")
+                    .addParameter(Executor.class, "executor")
+                    .addStatement("this.contract = contract")
+                    .addStatement("this.gson = gson")
+                    .addStatement("this.executor = executor")
+                    .build()
+            );
+        }
+        typeBuilder.addField(FieldSpec
+                .builder(TypeName.INT, "DEFAULT_ASYNC_THREADS", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .addJavadoc("Threads of the executor used when none is passed to the constructor.\n")
+                .initializer("$L", 64)
+                .build()
+        );
+        typeBuilder.addMethod(generateNewAsyncExecutorMethod());
+        typeBuilder.addType(generateDefaultExecutorHolderClass());
         MethodSpec contractInjectOverride = MethodSpec
                 .methodBuilder(INJECTED_CONTRACT_METHOD_NAME)
                 .addModifiers(Modifier.PUBLIC)
@@ -261,6 +1210,24 @@ public final class ApplicationApiGenerator extends AbstractApiGenerator {
                 .addStatement("return this.gson")
                 .build();
         typeBuilder.addMethod(gsonInjectOverride);
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder(INJECTED_EXECUTOR_METHOD_NAME)
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .returns(Executor.class)
+                .addStatement("return this.executor")
+                .build()
+        );
+        if (metrics) {
+            typeBuilder.addMethod(MethodSpec
+                    .methodBuilder(INJECTED_METRICS_METHOD_NAME)
+                    .addModifiers(Modifier.PUBLIC)
+                    .addAnnotation(Override.class)
+                    .returns(METRICS_CLASS)
+                    .addStatement("return this.metrics")
+                    .build()
+            );
+        }
 
         classes.getApis().forEach(def -> {
             ClassName interfaceClass = ClassName.get("", def.getName());
@@ -270,6 +1237,49 @@ public final class ApplicationApiGenerator extends AbstractApiGenerator {
         return typeBuilder.build();
     }
 
+    /**
+     * Public factory of the bounded pool async api methods run on by default, for callers sizing their own.
+     */
+    private MethodSpec generateNewAsyncExecutorMethod() {
+        ClassName atomicIntegerClass = ClassName.get("java.util.concurrent.atomic", "AtomicInteger");
+        return MethodSpec.methodBuilder("newAsyncExecutor")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addJavadoc("Pool of {@code threads} daemon threads for async api methods, to pass to a constructor.\n"
+                        + "Each async call holds a thread while it waits on the gateway, so this bounds the calls in flight;\n"
+                        + "further calls queue. Idle threads exit after a minute.\n")
+                .addParameter(TypeName.INT, "threads")
+                .returns(ExecutorService.class)
+                .addStatement("$T count = new $T()", atomicIntegerClass, atomicIntegerClass)
+                .addCode(CodeBlock.builder()
+                        .add("$T executor = new $T(threads, threads, 1, $T.MINUTES, new $T<>(), runnable -> {\n",
+                                ThreadPoolExecutor.class, ThreadPoolExecutor.class, TimeUnit.class, LinkedBlockingQueue.class)
+                        .indent()
+                        .addStatement("$T thread = new $T(runnable, $S + count.incrementAndGet())", Thread.class, Thread.class, "contract-api-async-")
+                        .addStatement("thread.setDaemon(true)")
+                        .addStatement("return thread")
+                        .unindent()
+                        .addStatement("})")
+                        .build()
+                )
+                .addStatement("executor.allowCoreThreadTimeOut(true)")
+                .addStatement("return executor")
+                .build();
+    }
+
+    /**
+     * Lazily created shared executor, bounded so a burst of async calls cannot start a thread per call.
+     */
+    private TypeSpec generateDefaultExecutorHolderClass() {
+        return TypeSpec.classBuilder("DefaultExecutorHolder")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .addField(FieldSpec
+                        .builder(ExecutorService.class, "INSTANCE", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("newAsyncExecutor(DEFAULT_ASYNC_THREADS)")
+                        .build()
+                )
+                .build();
+    }
+
     public TypeSpec generateResponseBodyClass() {
         TypeVariableName genericClass = TypeVariableName.get("T");
         TypeSpec.Builder typeBuilder = TypeSpec.classBuilder(RESPONSE_BODY_CLASS_NAME)
@@ -289,6 +1299,163 @@ public final class ApplicationApiGenerator extends AbstractApiGenerator {
         return typeBuilder.build();
     }
 
+    private TypeSpec generatePageBodyClass() {
+        TypeVariableName genericClass = TypeVariableName.get("T");
+        TypeSpec.Builder typeBuilder = TypeSpec.classBuilder(PAGE_BODY_CLASS_NAME)
+                .addAnnotation(LOMBOK_GETTER_ANNOTATION)
+                .addAnnotation(LOMBOK_SETTER_ANNOTATION)
+                .addAnnotation(LOMBOK_BUILDER_ANNOTATION)
+                .addAnnotation(LOMBOK_NO_ARGUS_CONS_ANNOTATION)
+                .addAnnotation(LOMBOK_ALL_ARGUS_CONS_ANNOTATION)
+                .addAnnotation(LOMBOK_TO_STRING_ANNOTATION)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addTypeVariable(genericClass);
+        Map<String, TypeName> map = new LinkedHashMap<>();
+        map.put("records", ParameterizedTypeName.get(ClassName.get(List.class), genericClass));
+        map.put("bookmark", ClassName.get(String.class));
+        map.forEach((fieldName, fieldType) -> decoratePojoWithField(fieldName, fieldType, typeBuilder));
+        return typeBuilder.build();
+    }
+
+    /**
+     * Decodes UTF-8 response and event payloads. The bytes are decoded in one pass, to a compact Latin-1 string for
+     * ASCII JSON, and streamed through a {@code JsonReader}, without the byte buffer and charset decoder of an
+     * {@code InputStreamReader}. Trailing data after the value is rejected, as {@code Gson.fromJson(String)} does.
+     */
+    private TypeSpec generateJsonDecoderClass() {
+        TypeVariableName genericClass = TypeVariableName.get("T");
+        return TypeSpec.classBuilder(JSON_DECODER_CLASS_NAME)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build())
+                .addMethod(MethodSpec
+                        .methodBuilder("decode")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .addJavadoc("@return {@code null} for empty bytes.\n")
+                        .addTypeVariable(genericClass)
+                        .returns(genericClass)
+                        .addParameter(GSON_CLASS, "gson")
+                        .addParameter(byte[].class, "bytes")
+                        .addParameter(Type.class, "type")
+                        .addStatement("$T reader = gson.newJsonReader(new $T(new $T(bytes, $T.UTF_8)))",
+                                GSON_JSON_READER_CLASS, StringReader.class, String.class, StandardCharsets.class)
+                        .addStatement("T result = gson.fromJson(reader, type)")
+                        .beginControlFlow("try")
+                        .beginControlFlow("if (reader.peek() != $T.END_DOCUMENT)", GSON_JSON_TOKEN_CLASS)
+                        .addStatement("throw new $T($S)", GSON_JSON_SYNTAX_EXCEPTION_CLASS, "JSON document was not fully consumed.")
+                        .endControlFlow()
+                        .nextControlFlow("catch ($T e)", EOFException.class)
+                        .addComment("only an empty document ends before its value, decoded as null.")
+                        .addStatement("return result")
+                        .nextControlFlow("catch ($T e)", GSON_MALFORMED_JSON_EXCEPTION_CLASS)
+                        .addStatement("throw new $T(e)", GSON_JSON_SYNTAX_EXCEPTION_CLASS)
+                        .nextControlFlow("catch ($T e)", IOException.class)
+                        .addStatement("throw new $T(e)", GSON_JSON_IO_EXCEPTION_CLASS)
+                        .endControlFlow()
+                        .addStatement("return result")
+                        .build()
+                )
+                .build();
+    }
+
+    /**
+     * Iterator over paged evaluate methods, holding at most one page in memory.
+     */
+    private TypeSpec generatePageIteratorClass() {
+        TypeVariableName genericClass = TypeVariableName.get("T");
+        TypeName pageType = ParameterizedTypeName.get(declareCustomClass(PAGE_BODY_CLASS_NAME), genericClass);
+        TypeName pageResponseType = ParameterizedTypeName.get(declareCustomClass(RESPONSE_BODY_CLASS_NAME), pageType);
+        TypeName recordsType = ParameterizedTypeName.get(ClassName.get(List.class), genericClass);
+        ClassName fetcherClass = ClassName.get("", PAGE_FETCHER_CLASS_NAME);
+        TypeSpec fetcherInterface = TypeSpec.interfaceBuilder(PAGE_FETCHER_CLASS_NAME)
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(FunctionalInterface.class)
+                .addTypeVariable(genericClass)
+                .addMethod(MethodSpec
+                        .methodBuilder("fetch")
+                        .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
+                        .addParameter(String.class, BOOKMARK_PARAM_NAME)
+                        .returns(pageResponseType)
+                        .addException(Exception.class)
+                        .build()
+                )
+                .build();
+        TypeSpec.Builder typeBuilder = TypeSpec.classBuilder(PAGE_ITERATOR_CLASS_NAME)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addTypeVariable(genericClass)
+                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(Iterator.class), genericClass))
+                .addType(fetcherInterface);
+        typeBuilder.addField(TypeName.INT, PAGE_SIZE_PARAM_NAME, Modifier.FINAL, Modifier.PRIVATE);
+        typeBuilder.addField(ParameterizedTypeName.get(fetcherClass, genericClass), "fetcher", Modifier.FINAL, Modifier.PRIVATE);
+        typeBuilder.addField(FieldSpec
+                .builder(String.class, BOOKMARK_PARAM_NAME, Modifier.PRIVATE)
+                .initializer("$S", "")
+                .build()
+        );
+        typeBuilder.addField(FieldSpec
+                .builder(ParameterizedTypeName.get(ClassName.get(Iterator.class), genericClass), "current", Modifier.PRIVATE)
+                .initializer("$T.emptyIterator()", Collections.class)
+                .build()
+        );
+        typeBuilder.addField(TypeName.BOOLEAN, "exhausted", Modifier.PRIVATE);
+        typeBuilder.addMethod(MethodSpec
+                .constructorBuilder()
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(TypeName.INT, PAGE_SIZE_PARAM_NAME)
+                .addParameter(ParameterizedTypeName.get(fetcherClass, genericClass), "fetcher")
+                .addStatement("this.$L = $L", PAGE_SIZE_PARAM_NAME, PAGE_SIZE_PARAM_NAME)
+                .addStatement("this.fetcher = fetcher")
+                .build()
+        );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("hasNext")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(TypeName.BOOLEAN)
+                .beginControlFlow("while (!this.current.hasNext())")
+                .beginControlFlow("if (this.exhausted)")
+                .addStatement("return false")
+                .endControlFlow()
+                .addStatement("fetchNextPage()")
+                .endControlFlow()
+                .addStatement("return true")
+                .build()
+        );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("next")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(genericClass)
+                .beginControlFlow("if (!hasNext())")
+                .addStatement("throw new $T()", NoSuchElementException.class)
+                .endControlFlow()
+                .addStatement("return this.current.next()")
+                .build()
+        );
+        typeBuilder.addMethod(MethodSpec
+                .methodBuilder("fetchNextPage")
+                .addModifiers(Modifier.PRIVATE)
+                .addStatement("$T response", pageResponseType)
+                .beginControlFlow("try")
+                .addStatement("response = this.fetcher.fetch(this.$L)", BOOKMARK_PARAM_NAME)
+                .nextControlFlow("catch ($T e)", Exception.class)
+                .addStatement("throw new $T($S, e)", IllegalStateException.class, "Failed to fetch next page.")
+                .endControlFlow()
+                .beginControlFlow("if (response == null || response.getCode() != 0)")
+                .addStatement("String msg = response == null ? null : response.getMsg()")
+                .addStatement("throw new $T($T.format($S, msg))", IllegalStateException.class, String.class, "Failed to fetch next page, msg: %s")
+                .endControlFlow()
+                .addStatement("$T page = response.getBody()", pageType)
+                .addStatement("$T records = page == null || page.getRecords() == null ? $T.emptyList() : page.getRecords()", recordsType, Collections.class)
+                .addStatement("String nextBookmark = page == null ? null : page.getBookmark()")
+                .addComment("a short page means the range is drained, so skip the extra empty round trip.")
+                .addStatement("this.exhausted = records.size() < this.$L || nextBookmark == null || nextBookmark.isEmpty() || nextBookmark.equals(this.$L)", PAGE_SIZE_PARAM_NAME, BOOKMARK_PARAM_NAME)
+                .addStatement("this.$L = nextBookmark", BOOKMARK_PARAM_NAME)
+                .addStatement("this.current = records.iterator()")
+                .build()
+        );
+        return typeBuilder.build();
+    }
+
     private void decoratePojoWithField(String fieldName, TypeName fieldType, TypeSpec.Builder typeBuilder) {
         // add field.
         AnnotationSpec gsonFieldAnnotation = AnnotationSpec
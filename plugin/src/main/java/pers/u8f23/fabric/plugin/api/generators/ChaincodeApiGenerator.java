@@ -6,11 +6,19 @@ import pers.u8f23.fabric.plugin.api.config.ClassesDefinition;
 import pers.u8f23.fabric.plugin.api.config.PojoDefinition;
 
 import javax.lang.model.element.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
+import static pers.u8f23.fabric.plugin.api.Constants.JSON_ENCODER_CLASS_NAME;
+import static pers.u8f23.fabric.plugin.api.Constants.PAGE_BODY_CLASS_NAME;
 import static pers.u8f23.fabric.plugin.api.Constants.RESPONSE_BODY_CLASS_NAME;
+import static pers.u8f23.fabric.plugin.api.Constants.STATE_CODEC_CLASS_NAME;
 
 public final class ChaincodeApiGenerator extends AbstractApiGenerator {
 
@@ -22,6 +30,36 @@ public final class ChaincodeApiGenerator extends AbstractApiGenerator {
             = ClassName.get("com.owlike.genson.annotation", "JsonProperty");
     private final static ClassName API_METHOD_PARAM_CONTEXT
             = ClassName.get("org.hyperledger.fabric.contract", "Context");
+    private final static ClassName STATE_CODEC_CLASS = ClassName.get("", STATE_CODEC_CLASS_NAME);
+    private final static ClassName JSON_ENCODER_CLASS = ClassName.get("", JSON_ENCODER_CLASS_NAME);
+    private final static String BINARY_CODEC_CLASS_NAME = "BinaryCodec";
+    private final static Set<String> JSON_NUMERIC_TYPES = Set.of("long", "int", "short", "byte", "double", "float", "boolean");
+
+    /**
+     * Binary layout of supported primitive field types: {@code {ByteBuffer put method, get method, byte size}}.
+     */
+    private final static Map<String, String[]> BINARY_PRIMITIVE_LAYOUTS = Map.of(
+            "long", new String[]{"putLong", "getLong", "Long.BYTES"},
+            "int", new String[]{"putInt", "getInt", "Integer.BYTES"},
+            "short", new String[]{"putShort", "getShort", "Short.BYTES"},
+            "byte", new String[]{"put", "get", "Byte.BYTES"},
+            "char", new String[]{"putChar", "getChar", "Character.BYTES"},
+            "double", new String[]{"putDouble", "getDouble", "Double.BYTES"},
+            "float", new String[]{"putFloat", "getFloat", "Float.BYTES"}
+    );
+
+    private final boolean binaryCodec;
+
+    public ChaincodeApiGenerator() {
+        this(false);
+    }
+
+    /**
+     * @param binaryCodec whether to generate a nested {@code BinaryCodec} for each pojo class.
+     */
+    public ChaincodeApiGenerator(boolean binaryCodec) {
+        this.binaryCodec = binaryCodec;
+    }
 
     @Override
     public TypeSpec buildPojoClass(PojoDefinition def) {
@@ -32,6 +70,10 @@ public final class ChaincodeApiGenerator extends AbstractApiGenerator {
         CodeBlock.Builder constructorCodeBuilder = CodeBlock.builder();
         def.getFields().get().forEach((fieldName, fieldType) -> decoratePojoWithField(fieldName, declareCustomClass(fieldType), typeBuilder, constructorBuilder, constructorCodeBuilder));
         typeBuilder.addMethod(constructorBuilder.addCode(constructorCodeBuilder.build()).build());
+        if (binaryCodec) {
+            typeBuilder.addType(buildBinaryCodecClass(def));
+        }
+        decoratePojoWithJsonWriter(def, typeBuilder);
         return typeBuilder.build();
     }
 
@@ -40,16 +82,21 @@ public final class ChaincodeApiGenerator extends AbstractApiGenerator {
         TypeSpec.Builder typeBuilder = TypeSpec.interfaceBuilder(def.getName())
                 .addModifiers(Modifier.PUBLIC);
         def.getMethods().forEach(methodDef -> {
-            TypeName returnType = ParameterizedTypeName.get(declareCustomClass(RESPONSE_BODY_CLASS_NAME), declareCustomClass(methodDef.getReturnType().get()));
+            TypeName returnType = ParameterizedTypeName.get(declareCustomClass(RESPONSE_BODY_CLASS_NAME), resolveBodyType(methodDef));
             MethodSpec.Builder methodBuilder = MethodSpec
                     .methodBuilder(methodDef.getName())
                     .addModifiers(Modifier.ABSTRACT, Modifier.PUBLIC)
                     .returns(String.class)
                     .addParameter(API_METHOD_PARAM_CONTEXT, "context")
                     .addJavadoc("@return {@link $T}", returnType);
-            methodDef.getParameters().get().forEach((paramName, paramType) ->
-                    methodBuilder.addParameter(declareCustomClass(paramType), paramName)
-            );
+            methodDef.getParameters().get().forEach((paramName, paramType) -> {
+                if (isListType(paramType)) {
+                    methodBuilder.addParameter(String.class, paramName)
+                            .addJavadoc("\n@param $L JSON array of {@code $L}", paramName, paramType);
+                } else {
+                    methodBuilder.addParameter(declareCustomClass(paramType), paramName);
+                }
+            });
             typeBuilder.addMethod(methodBuilder.build());
         });
         return typeBuilder.build();
@@ -59,10 +106,262 @@ public final class ChaincodeApiGenerator extends AbstractApiGenerator {
     public List<TypeSpec> buildOtherClasses(ClassesDefinition classes, String packageName) {
         return List.of(
                 generateComplexInterface(classes),
-                generateResponseBodyInterface()
+                generateResponseBodyInterface(),
+                generatePageBodyClass(),
+                generateStateCodecInterface(),
+                generateJsonEncoderClass(),
+                generateEventNamesClass(classes)
         );
     }
 
+    /**
+     * Add {@code writeJson} and {@code toJson} which encode fields directly, without reflection.
+     * Fields are written in alphabetical order with nulls included, as Genson orders them. Non-finite floats and
+     * doubles are written as quoted strings, as Genson writes them, instead of invalid JSON.
+     * Skipped if any field type is neither a primitive nor a string.
+     */
+    private void decoratePojoWithJsonWriter(PojoDefinition def, TypeSpec.Builder typeBuilder) {
+        Map<String, String> sortedFields = new TreeMap<>(def.getFields().get());
+        boolean supported = sortedFields.values()
+                .stream()
+                .allMatch(fieldType -> isStringType(fieldType) || "char".equals(fieldType) || JSON_NUMERIC_TYPES.contains(fieldType));
+        if (!supported) {
+            return;
+        }
+        MethodSpec.Builder writeBuilder = MethodSpec.methodBuilder("writeJson")
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(StringBuilder.class, "out");
+        String separator = "{";
+        for (Map.Entry<String, String> field : sortedFields.entrySet()) {
+            String fieldName = field.getKey();
+            String fieldType = field.getValue();
+            writeBuilder.addStatement("out.append($S)", separator + "\"" + fieldName + "\":");
+            if (isStringType(fieldType)) {
+                writeBuilder.addStatement("$T.writeString(out, this.$L)", JSON_ENCODER_CLASS, fieldName);
+            } else if ("char".equals(fieldType)) {
+                writeBuilder.addStatement("$T.writeString(out, String.valueOf(this.$L))", JSON_ENCODER_CLASS, fieldName);
+            } else if ("double".equals(fieldType) || "float".equals(fieldType)) {
+                writeBuilder.addStatement("$T.writeFloating(out, this.$L)", JSON_ENCODER_CLASS, fieldName);
+            } else {
+                writeBuilder.addStatement("out.append(this.$L)", fieldName);
+            }
+            separator = ",";
+        }
+        writeBuilder.addStatement("out.append($S)", sortedFields.isEmpty() ? "{}" : "}");
+        typeBuilder.addMethod(writeBuilder.build());
+        typeBuilder.addMethod(MethodSpec.methodBuilder("toJson")
+                .addModifiers(Modifier.PUBLIC)
+                .returns(String.class)
+                .addStatement("$T out = new $T()", StringBuilder.class, StringBuilder.class)
+                .addStatement("writeJson(out)")
+                .addStatement("return out.toString()")
+                .build()
+        );
+    }
+
+    private TypeSpec generateJsonEncoderClass() {
+        return TypeSpec.classBuilder(JSON_ENCODER_CLASS_NAME)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addJavadoc("Helpers for generated {@code writeJson} methods.\n")
+                .addField(FieldSpec
+                        .builder(char[].class, "HEX_DIGITS", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("$S.toCharArray()", "0123456789abcdef")
+                        .build()
+                )
+                .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build())
+                .addMethod(MethodSpec
+                        .methodBuilder("writeString")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .addJavadoc("Append {@code value} as a quoted JSON string, or {@code null}.\n"
+                                + "Escapes quote, backslash, control characters, U+2028 and U+2029.\n")
+                        .addParameter(StringBuilder.class, "out")
+                        .addParameter(String.class, "value")
+                        .beginControlFlow("if (value == null)")
+                        .addStatement("out.append($S)", "null")
+                        .addStatement("return")
+                        .endControlFlow()
+                        .addStatement("out.append('\"')")
+                        .addStatement("int start = 0")
+                        .addStatement("int length = value.length()")
+                        .beginControlFlow("for (int i = 0; i < length; i++)")
+                        .addStatement("char c = value.charAt(i)")
+                        .beginControlFlow("if (c >= 0x20 && c != '\"' && c != '\\\\' && c != 0x2028 && c != 0x2029)")
+                        .addStatement("continue")
+                        .endControlFlow()
+                        .addStatement("out.append(value, start, i)")
+                        .beginControlFlow("switch (c)")
+                        .addStatement("case '\"': out.append($S); break", "\\\"")
+                        .addStatement("case '\\\\': out.append($S); break", "\\\\")
+                        .addStatement("case '\\n': out.append($S); break", "\\n")
+                        .addStatement("case '\\r': out.append($S); break", "\\r")
+                        .addStatement("case '\\t': out.append($S); break", "\\t")
+                        .addStatement("case '\\b': out.append($S); break", "\\b")
+                        .addStatement("case '\\f': out.append($S); break", "\\f")
+                        .addStatement("default: out.append($S).append(HEX_DIGITS[(c >> 12) & 0xF]).append(HEX_DIGITS[(c >> 8) & 0xF]).append(HEX_DIGITS[(c >> 4) & 0xF]).append(HEX_DIGITS[c & 0xF])", "\\u")
+                        .endControlFlow()
+                        .addStatement("start = i + 1")
+                        .endControlFlow()
+                        .addStatement("out.append(value, start, length)")
+                        .addStatement("out.append('\"')")
+                        .build()
+                )
+                .addMethod(MethodSpec
+                        .methodBuilder("writeFloating")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .addJavadoc("Append {@code value}, quoting {@code NaN} and infinities which are not JSON numbers.\n")
+                        .addParameter(StringBuilder.class, "out")
+                        .addParameter(double.class, "value")
+                        .beginControlFlow("if (Double.isFinite(value))")
+                        .addStatement("out.append(value)")
+                        .nextControlFlow("else")
+                        .addStatement("out.append('\"').append(value).append('\"')")
+                        .endControlFlow()
+                        .build()
+                )
+                .addMethod(MethodSpec
+                        .methodBuilder("writeFloating")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .addParameter(StringBuilder.class, "out")
+                        .addParameter(float.class, "value")
+                        .beginControlFlow("if (Float.isFinite(value))")
+                        .addStatement("out.append(value)")
+                        .nextControlFlow("else")
+                        .addStatement("out.append('\"').append(value).append('\"')")
+                        .endControlFlow()
+                        .build()
+                )
+                .build();
+    }
+
+    private TypeSpec generateStateCodecInterface() {
+        TypeVariableName genericClass = TypeVariableName.get("T");
+        return TypeSpec.interfaceBuilder(STATE_CODEC_CLASS_NAME)
+                .addModifiers(Modifier.PUBLIC)
+                .addTypeVariable(genericClass)
+                .addJavadoc("Converts between a pojo and the bytes stored in world state.\n")
+                .addMethod(MethodSpec
+                        .methodBuilder("encode")
+                        .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
+                        .addParameter(genericClass, "value")
+                        .returns(byte[].class)
+                        .build()
+                )
+                .addMethod(MethodSpec
+                        .methodBuilder("decode")
+                        .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
+                        .addParameter(byte[].class, "bytes")
+                        .returns(genericClass)
+                        .build()
+                )
+                .build();
+    }
+
+    /**
+     * Layout: a version byte, then each field in declaration order.
+     * Primitives use fixed big-endian widths, strings are UTF-8 bytes prefixed by an int length ({@code -1} for null).
+     */
+    private TypeSpec buildBinaryCodecClass(PojoDefinition def) {
+        ClassName pojoClass = declareCustomClass(def.getName());
+        ClassName codecClass = ClassName.get("", BINARY_CODEC_CLASS_NAME);
+        MethodSpec.Builder encodeBuilder = MethodSpec.methodBuilder("encode")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(pojoClass, "value")
+                .returns(byte[].class)
+                .addStatement("int size = Byte.BYTES");
+        CodeBlock.Builder writeCodeBuilder = CodeBlock.builder()
+                .addStatement("$T buffer = $T.allocate(size)", ByteBuffer.class, ByteBuffer.class)
+                .addStatement("buffer.put(VERSION)");
+        List<CodeBlock> readExpressions = new ArrayList<>();
+        def.getFields().get().forEach((fieldName, fieldType) -> {
+            String getter = castFieldToGetter(fieldName);
+            if (isStringType(fieldType)) {
+                encodeBuilder.addStatement("byte[] $LBytes = encodeString(value.$L())", fieldName, getter);
+                encodeBuilder.addStatement("size += Integer.BYTES + ($LBytes == null ? 0 : $LBytes.length)", fieldName, fieldName);
+                writeCodeBuilder.addStatement("putString(buffer, $LBytes)", fieldName);
+                readExpressions.add(CodeBlock.of("readString(buffer)"));
+            } else if ("boolean".equals(fieldType)) {
+                encodeBuilder.addStatement("size += Byte.BYTES");
+                writeCodeBuilder.addStatement("buffer.put((byte) (value.$L() ? 1 : 0))", getter);
+                readExpressions.add(CodeBlock.of("buffer.get() != 0"));
+            } else if (BINARY_PRIMITIVE_LAYOUTS.containsKey(fieldType)) {
+                String[] layout = BINARY_PRIMITIVE_LAYOUTS.get(fieldType);
+                encodeBuilder.addStatement("size += $L", layout[2]);
+                writeCodeBuilder.addStatement("buffer.$L(value.$L())", layout[0], getter);
+                readExpressions.add(CodeBlock.of("buffer.$L()", layout[1]));
+            } else {
+                throw new IllegalArgumentException(String.format("Binary codec does not support field \"%s\" of type \"%s\" in pojo \"%s\".", fieldName, fieldType, def.getName()));
+            }
+        });
+        encodeBuilder.addCode(writeCodeBuilder.build())
+                .addStatement("return buffer.array()");
+        MethodSpec decode = MethodSpec.methodBuilder("decode")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(byte[].class, "bytes")
+                .returns(pojoClass)
+                .addStatement("$T buffer = $T.wrap(bytes)", ByteBuffer.class, ByteBuffer.class)
+                .addStatement("byte version = buffer.get()")
+                .beginControlFlow("if (version != VERSION)")
+                .addStatement("throw new $T($T.format($S, version))", IllegalArgumentException.class, String.class, String.format("Unsupported binary codec version %%d of %s.", def.getName()))
+                .endControlFlow()
+                .addComment("arguments are evaluated from left to right, so fields are read in layout order.")
+                .addStatement("return new $T($L)", pojoClass, CodeBlock.join(readExpressions, ", "))
+                .build();
+        return TypeSpec.classBuilder(BINARY_CODEC_CLASS_NAME)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .addSuperinterface(ParameterizedTypeName.get(STATE_CODEC_CLASS, pojoClass))
+                .addField(FieldSpec
+                        .builder(TypeName.BYTE, "VERSION", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("1")
+                        .build()
+                )
+                .addField(FieldSpec
+                        .builder(codecClass, "INSTANCE", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("new $T()", codecClass)
+                        .build()
+                )
+                .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build())
+                .addMethod(encodeBuilder.build())
+                .addMethod(decode)
+                .addMethod(MethodSpec
+                        .methodBuilder("encodeString")
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                        .addParameter(String.class, "value")
+                        .returns(byte[].class)
+                        .addStatement("return value == null ? null : value.getBytes($T.UTF_8)", StandardCharsets.class)
+                        .build()
+                )
+                .addMethod(MethodSpec
+                        .methodBuilder("putString")
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                        .addParameter(ByteBuffer.class, "buffer")
+                        .addParameter(byte[].class, "bytes")
+                        .beginControlFlow("if (bytes == null)")
+                        .addStatement("buffer.putInt(-1)")
+                        .addStatement("return")
+                        .endControlFlow()
+                        .addStatement("buffer.putInt(bytes.length)")
+                        .addStatement("buffer.put(bytes)")
+                        .build()
+                )
+                .addMethod(MethodSpec
+                        .methodBuilder("readString")
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                        .addParameter(ByteBuffer.class, "buffer")
+                        .returns(String.class)
+                        .addStatement("int length = buffer.getInt()")
+                        .beginControlFlow("if (length < 0)")
+                        .addStatement("return null")
+                        .endControlFlow()
+                        .addStatement("String value = new String(buffer.array(), buffer.position(), length, $T.UTF_8)", StandardCharsets.class)
+                        .addStatement("buffer.position(buffer.position() + length)")
+                        .addStatement("return value")
+                        .build()
+                )
+                .build();
+    }
+
     private TypeSpec generateComplexInterface(ClassesDefinition classes) {
         TypeSpec.Builder typeBuilder = TypeSpec.interfaceBuilder(classes.getComplexApiClassName().get())
                 .addModifiers(Modifier.PUBLIC);
@@ -112,6 +411,22 @@ public final class ChaincodeApiGenerator extends AbstractApiGenerator {
         return typeBuilder.build();
     }
 
+    private TypeSpec generatePageBodyClass() {
+        TypeVariableName genericClass = TypeVariableName.get("T");
+        TypeSpec.Builder typeBuilder = TypeSpec.classBuilder(PAGE_BODY_CLASS_NAME)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addAnnotation(POJO_CLASS_ANNOTATION)
+                .addTypeVariable(genericClass);
+        MethodSpec.Builder constructorBuilder = MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC);
+        CodeBlock.Builder constructorCodeBuilder = CodeBlock.builder();
+        Map<String, TypeName> map = new LinkedHashMap<>();
+        map.put("records", ParameterizedTypeName.get(ClassName.get(List.class), genericClass));
+        map.put("bookmark", ClassName.get(String.class));
+        map.forEach((fieldName, fieldType) -> decoratePojoWithField(fieldName, fieldType, typeBuilder, constructorBuilder, constructorCodeBuilder));
+        typeBuilder.addMethod(constructorBuilder.addCode(constructorCodeBuilder.build()).build());
+        return typeBuilder.build();
+    }
+
     private void decoratePojoWithField(String fieldName, TypeName fieldType, TypeSpec.Builder typeBuilder, MethodSpec.Builder constructorBuilder, CodeBlock.Builder constructorCodeBuilder) {
         // add field.
         typeBuilder.addField(FieldSpec